@@ -2,23 +2,35 @@ package com.atlassian.migration.app.zephyr;
 
 import com.atlassian.migration.app.zephyr.common.ApiConfiguration;
 import com.atlassian.migration.app.zephyr.common.DataSourceFactory;
+import com.atlassian.migration.app.zephyr.common.DataSourcePoolConfiguration;
 import com.atlassian.migration.app.zephyr.common.PropertySanitizer;
+import com.atlassian.migration.app.zephyr.common.WorkerPool;
 import com.atlassian.migration.app.zephyr.jira.api.JiraApi;
 import com.atlassian.migration.app.zephyr.migration.*;
+import com.atlassian.migration.app.zephyr.migration.service.SquadExecutionService;
+import com.atlassian.migration.app.zephyr.migration.service.WikiMarkupRenderer;
 import com.atlassian.migration.app.zephyr.scale.api.ScaleApi;
 import com.atlassian.migration.app.zephyr.squad.api.SquadApi;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.sql.DataSource;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Properties;
 
 public class ApplicationMain {
 
     private static final Logger logger = LoggerFactory.getLogger(ApplicationMain.class);
 
-    public static void main(String[] args) {
+    private static final String RESUME_ARGUMENT = "--resume";
+
+    public static void main(String[] arguments) {
+
+        var resume = Arrays.asList(arguments).contains(RESUME_ARGUMENT);
+        var args = Arrays.stream(arguments).filter(arg -> !RESUME_ARGUMENT.equals(arg)).toArray(String[]::new);
 
         if (args.length < 2) {
             logger.error("Username and password are required as command line arguments.");
@@ -30,15 +42,33 @@ public class ApplicationMain {
 
             var migrationConfig = loadMigrationConfiguration(args, input);
 
-            logger.info("Starting migration...");
-
-            SquadToScaleMigrator migrator = createSquadToScaleMigrator(migrationConfig);
-
-            if (args.length == 3) {
-                var projectKey = args[2].toUpperCase();
-                migrator.runMigration(projectKey);
-            } else {
-                migrator.getProjectListAndRunMigration();
+            logger.info(resume ? "Resuming migration..." : "Starting migration...");
+
+            var dataSource = new DataSourceFactory().createPooledDataSourceFromDatabaseName(
+                    migrationConfig.databaseType(), migrationConfig.databasePool());
+
+            try (var journal = MigrationJournal.open(Path.of(migrationConfig.journalFile()), resume);
+                 var csvExporter = new AttachmentsCsvExporter(migrationConfig.attachmentsMappedCsvFile(), resume);
+                 var attachmentsCopier = new AttachmentsCopier(migrationConfig.attachmentsBaseFolder(),
+                         migrationConfig.attachmentCopyThreads(), migrationConfig.attachmentTransfer());
+                 var workerPool = SquadToScaleMigrator.createWorkerPool(migrationConfig);
+                 var migrator = createSquadToScaleMigrator(migrationConfig, dataSource, journal, csvExporter,
+                         attachmentsCopier, workerPool)) {
+                journal.runStarted(args.length == 3 ? args[2].toUpperCase() : MigrationJournal.ALL_PROJECTS,
+                        migrationConfig.paginationMode().toString());
+
+                if (resume) {
+                    csvExporter.discardAfter(journal.attachmentsCsvLength());
+                }
+
+                if (args.length == 3) {
+                    var projectKey = args[2].toUpperCase();
+                    migrator.runMigration(projectKey);
+                } else {
+                    migrator.getProjectListAndRunMigration();
+                }
+            } finally {
+                closeDataSource(dataSource);
             }
 
             logger.info("Migration completed.");
@@ -59,31 +89,99 @@ public class ApplicationMain {
         var attachmentsMappedCsvFile = prop.getProperty("attachmentsMappedCsvFile");
         var databaseType = prop.getProperty("database");
         var httpVersion = prop.getProperty("httpVersion");
+        var maxConcurrentRequestsPerHost = Integer.parseInt(prop.getProperty("maxConcurrentRequestsPerHost",
+                String.valueOf(ApiConfiguration.DEFAULT_MAX_CONCURRENT_REQUESTS_PER_HOST)));
+        var adaptiveConcurrency = Boolean.parseBoolean(prop.getProperty("adaptiveConcurrency",
+                String.valueOf(ApiConfiguration.DEFAULT_ADAPTIVE_CONCURRENCY)));
+        var acceptEncoding = PropertySanitizer.sanitizeAcceptEncoding(prop.getProperty("acceptEncoding"));
         var attachmentsBaseFolder = PropertySanitizer.sanitizeAttachmentsBaseFolder(prop.getProperty("attachmentsBaseFolder"));
+        var testCaseCreationThreads = Integer.parseInt(prop.getProperty("testCaseCreationThreads",
+                String.valueOf(MigrationConfiguration.DEFAULT_TEST_CASE_CREATION_THREADS)));
+        var executionMode = WorkerPool.ExecutionMode.getExecutionModeByName(prop.getProperty("executionMode",
+                MigrationConfiguration.DEFAULT_EXECUTION_MODE.toString()));
+        var maxInFlightTasks = Integer.parseInt(prop.getProperty("maxInFlightTasks",
+                String.valueOf(MigrationConfiguration.DEFAULT_MAX_IN_FLIGHT_TASKS)));
+        var testResultsBatchSize = Integer.parseInt(prop.getProperty("testResultsBatchSize",
+                String.valueOf(MigrationConfiguration.DEFAULT_TEST_RESULTS_BATCH_SIZE)));
+        var journalFile = prop.getProperty("journalFile", MigrationConfiguration.DEFAULT_JOURNAL_FILE);
+        var pagePrefetchDepth = Integer.parseInt(prop.getProperty("pagePrefetchDepth",
+                String.valueOf(MigrationConfiguration.DEFAULT_PAGE_PREFETCH_DEPTH)));
+        var paginationMode = IssuePageReader.PaginationMode.getPaginationModeByName(prop.getProperty("paginationMode",
+                MigrationConfiguration.DEFAULT_PAGINATION_MODE.toString()));
+        var databasePool = new DataSourcePoolConfiguration(
+                Integer.parseInt(prop.getProperty("databasePoolMinIdle",
+                        String.valueOf(DataSourcePoolConfiguration.DEFAULT_MIN_IDLE))),
+                Integer.parseInt(prop.getProperty("databasePoolMaxSize",
+                        String.valueOf(DataSourcePoolConfiguration.DEFAULT_MAX_SIZE))),
+                Integer.parseInt(prop.getProperty("databasePoolStatementCacheSize",
+                        String.valueOf(DataSourcePoolConfiguration.DEFAULT_STATEMENT_CACHE_SIZE))));
+        var pageProcessingMode = SquadToScaleMigrator.PageProcessingMode.getPageProcessingModeByName(
+                prop.getProperty("pageProcessing", MigrationConfiguration.DEFAULT_PAGE_PROCESSING_MODE.toString()));
+        var projectConcurrency = Integer.parseInt(prop.getProperty("projectConcurrency",
+                String.valueOf(MigrationConfiguration.DEFAULT_PROJECT_CONCURRENCY)));
+        var searchPageSize = Integer.parseInt(prop.getProperty("searchPageSize",
+                String.valueOf(MigrationConfiguration.DEFAULT_SEARCH_PAGE_SIZE)));
+        var executionExtraction = SquadExecutionService.ExtractionMode.getExtractionModeByName(
+                prop.getProperty("executionExtraction", MigrationConfiguration.DEFAULT_EXECUTION_EXTRACTION.toString()));
+        var attachmentCopyThreads = Integer.parseInt(prop.getProperty("attachmentCopyThreads",
+                String.valueOf(MigrationConfiguration.DEFAULT_ATTACHMENT_COPY_THREADS)));
+        var attachmentTransfer = AttachmentsCopier.TransferMode.getTransferModeByName(prop.getProperty(
+                "attachmentTransfer", MigrationConfiguration.DEFAULT_ATTACHMENT_TRANSFER.toString()));
+        var attachmentsExport = AttachmentsMigrator.ExportMode.getExportModeByName(prop.getProperty(
+                "attachmentsExport", MigrationConfiguration.DEFAULT_ATTACHMENTS_EXPORT.toString()));
+        var wikiRenderer = WikiMarkupRenderer.RendererMode.getRendererModeByName(prop.getProperty("wikiRenderer",
+                MigrationConfiguration.DEFAULT_WIKI_RENDERER.toString()));
 
         var username = args[0];
         var password = args[1];
 
-        var apiConfig = new ApiConfiguration(host, username, password.toCharArray(), httpVersion);
-
-        return new MigrationConfiguration(apiConfig, pageSteps, cycleNamePlaceHolder,
-                attachmentsMappedCsvFile, databaseType, attachmentsBaseFolder);
+        var apiConfig = new ApiConfiguration(host, username, password.toCharArray(), httpVersion,
+                maxConcurrentRequestsPerHost, adaptiveConcurrency, acceptEncoding);
+
+        return MigrationConfiguration.builder(apiConfig, pageSteps, cycleNamePlaceHolder, attachmentsMappedCsvFile,
+                        databaseType, attachmentsBaseFolder)
+                .testCaseCreationThreads(testCaseCreationThreads)
+                .executionMode(executionMode)
+                .maxInFlightTasks(maxInFlightTasks)
+                .testResultsBatchSize(testResultsBatchSize)
+                .journalFile(journalFile)
+                .pagePrefetchDepth(pagePrefetchDepth)
+                .paginationMode(paginationMode)
+                .wikiRenderer(wikiRenderer)
+                .databasePool(databasePool)
+                .pageProcessingMode(pageProcessingMode)
+                .projectConcurrency(projectConcurrency)
+                .searchPageSize(searchPageSize)
+                .executionExtraction(executionExtraction)
+                .attachmentCopyThreads(attachmentCopyThreads)
+                .attachmentTransfer(attachmentTransfer)
+                .attachmentsExport(attachmentsExport)
+                .build();
     }
 
-    private static SquadToScaleMigrator createSquadToScaleMigrator(MigrationConfiguration migrationConfig) throws IOException {
+    private static SquadToScaleMigrator createSquadToScaleMigrator(MigrationConfiguration migrationConfig,
+                                                                   DataSource dataSource,
+                                                                   MigrationJournal journal,
+                                                                   AttachmentsCsvExporter csvExporter,
+                                                                   AttachmentsCopier attachmentsCopier,
+                                                                   WorkerPool workerPool) {
         var jiraApi = new JiraApi(migrationConfig.apiConfiguration());
         var squadApi = new SquadApi(migrationConfig.apiConfiguration());
         var scaleApi = new ScaleApi(migrationConfig.apiConfiguration());
-        var csvExporter = new AttachmentsCsvExporter(migrationConfig.attachmentsMappedCsvFile());
-        var attachmentsCopier = new AttachmentsCopier(migrationConfig.attachmentsBaseFolder());
-
-        var dataSourceFactory = new DataSourceFactory();
-        var dataSource = dataSourceFactory.createDataSourceFromDatabaseName(migrationConfig.databaseType());
-
         var attachmentsCsvExporter = new AttachmentsMigrator(jiraApi, scaleApi, squadApi, dataSource,
-                csvExporter, attachmentsCopier);
+                csvExporter, attachmentsCopier, workerPool, migrationConfig.attachmentsExport());
 
         return new SquadToScaleMigrator(jiraApi, squadApi, scaleApi, attachmentsCsvExporter,
-                migrationConfig);
+                migrationConfig, workerPool, journal);
+    }
+
+    private static void closeDataSource(DataSource dataSource) {
+        if (dataSource instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception ex) {
+                logger.warn("Failed to close database connections: " + ex.getMessage());
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,153 @@
+package com.atlassian.migration.app.zephyr.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Controls how many requests are sent at once to a single host, following the responses it gets back.
+ * <p>
+ * In adaptive mode the limit grows by one after every healthy window of responses and is cut down when the
+ * host throttles (429 or 503) or when the p95 latency of a window drifts too far from the best one seen, the
+ * usual additive increase, multiplicative decrease scheme. A fixed controller keeps its limit.
+ * <p>
+ * Either way, a Retry-After sent by the host holds back every new request to it until that time has passed.
+ */
+public class AdaptiveConcurrencyController {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveConcurrencyController.class);
+
+    static final int LATENCY_SAMPLES = 100;
+    static final int MIN_WINDOW = 20;
+    static final double LATENCY_TOLERANCE = 2.0;
+    static final double THROTTLED_DECREASE = 0.5;
+    static final double LATENCY_DECREASE = 0.9;
+
+    public static final int ADAPTIVE_INITIAL_LIMIT = 4;
+
+    private final HostConcurrencyLimiter limiter;
+    private final boolean adaptive;
+    private final int maxLimit;
+    private final LongSupplier nanoClock;
+
+    private final long[] latencySamples = new long[LATENCY_SAMPLES];
+    private int recordedSamples = 0;
+    private int windowResponses = 0;
+    private long responses = 0;
+    //responses to requests sent before the last decrease were sent at the old rate, so they don't count twice
+    private long nextDecreaseAt = 0;
+    private long bestP95Nanos = Long.MAX_VALUE;
+    private long lastP95Nanos = 0;
+    private long pausedUntilNanos;
+
+    AdaptiveConcurrencyController(int initialLimit, int maxLimit, boolean adaptive, LongSupplier nanoClock) {
+        this.limiter = new HostConcurrencyLimiter(initialLimit);
+        this.maxLimit = maxLimit;
+        this.adaptive = adaptive;
+        this.nanoClock = nanoClock;
+        this.pausedUntilNanos = nanoClock.getAsLong();
+    }
+
+    public static AdaptiveConcurrencyController fixed(int limit) {
+        return new AdaptiveConcurrencyController(limit, limit, false, System::nanoTime);
+    }
+
+    //starts low and finds its way up to maxLimit, rather than opening with a burst the host may not tolerate
+    public static AdaptiveConcurrencyController adaptive(int maxLimit) {
+        return new AdaptiveConcurrencyController(Math.min(ADAPTIVE_INITIAL_LIMIT, maxLimit), maxLimit, true,
+                System::nanoTime);
+    }
+
+    public CompletableFuture<Void> acquire() {
+        var pauseNanos = pauseRemainingNanos();
+
+        if (pauseNanos > 0) {
+            var delayedExecutor = CompletableFuture.delayedExecutor(pauseNanos, TimeUnit.NANOSECONDS);
+            return CompletableFuture.runAsync(() -> {
+            }, delayedExecutor).thenCompose(unused -> acquire());
+        }
+
+        return limiter.acquire();
+    }
+
+    public void release() {
+        limiter.release();
+    }
+
+    public void onResponse(int statusCode, long latencyNanos) {
+        if (!adaptive) {
+            return;
+        }
+
+        synchronized (this) {
+            responses++;
+
+            if (statusCode == 429 || statusCode == 503) {
+                decrease(THROTTLED_DECREASE, "host throttled with code " + statusCode);
+                return;
+            }
+
+            if (statusCode / 100 != 2) {
+                return;
+            }
+
+            latencySamples[recordedSamples++ % LATENCY_SAMPLES] = latencyNanos;
+
+            if (++windowResponses < Math.max(limiter.limit(), MIN_WINDOW)) {
+                return;
+            }
+
+            windowResponses = 0;
+            lastP95Nanos = p95Nanos();
+            bestP95Nanos = Math.min(bestP95Nanos, lastP95Nanos);
+
+            if (lastP95Nanos > bestP95Nanos * LATENCY_TOLERANCE) {
+                decrease(LATENCY_DECREASE, "p95 latency rose to " + TimeUnit.NANOSECONDS.toMillis(lastP95Nanos) + "ms");
+            } else if (limiter.limit() < maxLimit) {
+                limiter.setLimit(limiter.limit() + 1);
+            }
+        }
+    }
+
+    public synchronized void onRetryAfter(Duration retryAfter) {
+        pausedUntilNanos = Math.max(pausedUntilNanos, nanoClock.getAsLong() + retryAfter.toNanos());
+    }
+
+    public int limit() {
+        return limiter.limit();
+    }
+
+    public synchronized long p95LatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastP95Nanos);
+    }
+
+    private synchronized long pauseRemainingNanos() {
+        return pausedUntilNanos - nanoClock.getAsLong();
+    }
+
+    private void decrease(double factor, String reason) {
+        if (responses < nextDecreaseAt) {
+            return;
+        }
+
+        var decreasedLimit = Math.max(1, (int) (limiter.limit() * factor));
+        nextDecreaseAt = responses + limiter.limit();
+        windowResponses = 0;
+
+        if (decreasedLimit != limiter.limit()) {
+            logger.info("Lowering concurrent requests to " + decreasedLimit + ", " + reason);
+            limiter.setLimit(decreasedLimit);
+        }
+    }
+
+    private long p95Nanos() {
+        var samples = Arrays.copyOf(latencySamples, Math.min(recordedSamples, LATENCY_SAMPLES));
+        Arrays.sort(samples);
+        return samples[(int) Math.ceil(samples.length * 0.95) - 1];
+    }
+}
@@ -1,4 +1,10 @@
 package com.atlassian.migration.app.zephyr.common;
 
-public record ApiConfiguration(String host, String username, char[] password, String httpVersion) {
+public record ApiConfiguration(String host, String username, char[] password, String httpVersion,
+                               int maxConcurrentRequestsPerHost, boolean adaptiveConcurrency,
+                               String acceptEncoding) {
+
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS_PER_HOST = 16;
+    public static final boolean DEFAULT_ADAPTIVE_CONCURRENCY = false;
+    public static final String DEFAULT_ACCEPT_ENCODING = "identity;q=1.0";
 }
@@ -22,5 +22,12 @@ public class ApiException extends IOException {
         this.message = message;
     }
 
+    public ApiException(int code, String message, Throwable cause) {
+        super(message, cause);
+        this.code = code;
+        this.codeMajor = code/100;
+        this.message = message;
+    }
+
 
 }
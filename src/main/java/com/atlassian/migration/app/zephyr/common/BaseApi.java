@@ -1,11 +1,20 @@
 package com.atlassian.migration.app.zephyr.common;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
 import org.apache.hc.core5.net.URIBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.lang.reflect.Type;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.http.HttpClient;
@@ -13,10 +22,21 @@ import java.net.http.HttpConnectTimeoutException;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Base64;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
@@ -34,12 +54,17 @@ public abstract class BaseApi {
     private static final int MAX_RETRIES = 3;
     private static final int BACKOFF = 1000;
     private static final int BACKOFF_MULTIPLIER = 2;
-    private static final List<Integer> retryEnabledCodes = List.of(408, 504, 500, 503);
+    private static final List<Integer> retryEnabledCodes = List.of(408, 429, 504, 500, 503);
+    private static final Duration MAX_RETRY_AFTER = Duration.ofMinutes(5);
     private static final Map<String, Decoder> decodersMap = Map.of(
             "gzip", new GzipDecoder(),
+            "deflate", new DeflateDecoder(),
             "identity", new IdentityDecoder()
     );
 
+    //shared by every API instance, as Jira, Squad and Scale are usually served by the same host
+    private static final Map<String, AdaptiveConcurrencyController> hostControllers = new ConcurrentHashMap<>();
+
     public BaseApi(ApiConfiguration config) {
         this.config = config;
         this.client = createClientWithVersion(config.httpVersion());
@@ -60,68 +85,254 @@ public abstract class BaseApi {
         }
     }
 
-    private void runBackoffTimer(int tries) throws ApiException {
+    private static long backoffMillis(int tries) {
+        return (long) BACKOFF * Math.max(BACKOFF_MULTIPLIER * tries, 1);
+    }
 
-        var retry_backoff = BACKOFF * Math.max(BACKOFF_MULTIPLIER * tries, 1);
+    //a host asking to come back later is waited for, when it asks for longer than the backoff
+    private static long backoffMillis(int tries, HttpResponse<?> response) {
+        return Math.max(backoffMillis(tries), retryAfter(response).map(Duration::toMillis).orElse(0L));
+    }
 
-        logger.info("New attempt in " + retry_backoff + "ms...");
+    static Optional<Duration> retryAfter(HttpResponse<?> response) {
+        return response.headers().firstValue("Retry-After").flatMap(BaseApi::parseRetryAfter)
+                .map(retryAfter -> retryAfter.compareTo(MAX_RETRY_AFTER) > 0 ? MAX_RETRY_AFTER : retryAfter);
+    }
+
+    //Retry-After is either a number of seconds or an HTTP date
+    private static Optional<Duration> parseRetryAfter(String retryAfter) {
         try {
-            Thread.sleep(retry_backoff);
-        } catch (InterruptedException e) {
-            logger.error("Failed to sleep", e);
-            throw new ApiException(e);
+            return Optional.of(Duration.ofSeconds(Math.max(0, Long.parseLong(retryAfter.trim()))));
+        } catch (NumberFormatException notSeconds) {
+            try {
+                var retryAt = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                var untilRetry = Duration.between(ZonedDateTime.now(retryAt.getZone()), retryAt);
+                return Optional.of(untilRetry.isNegative() ? Duration.ZERO : untilRetry);
+            } catch (DateTimeParseException notDate) {
+                logger.warn("Ignoring unreadable Retry-After header: " + retryAfter);
+                return Optional.empty();
+            }
         }
+    }
 
-        logger.info("Retry triggered");
+    //reads the body of a successful response, while it is still streaming in from the connection
+    @FunctionalInterface
+    private interface BodyReader<T> {
+        T read(HttpResponse<InputStream> response) throws ApiException;
     }
 
     private String sendRequest(HttpRequest request) throws ApiException {
+        return sendRequest(request, this::decodeBody);
+    }
 
-        HttpResponse<byte[]> response;
+    /**
+     * Synchronous requests go through the same exchange as the asynchronous ones, the calling thread only waits
+     * for its own response. The body is handed over as it streams in, so large responses are never held whole.
+     */
+    private <T> T sendRequest(HttpRequest request, BodyReader<T> bodyReader) throws ApiException {
 
-        for (int tries = 0; tries < MAX_RETRIES; tries++) {
+        var response = await(exchangeAsync(request, HttpResponse.BodyHandlers.ofInputStream(), 0));
 
-            try {
-                response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
-            } catch (HttpConnectTimeoutException e) {
-                logger.info("Http Connection Timed out, retrying...");
-                runBackoffTimer(tries);
-                continue;
-            } catch (IOException | InterruptedException e) {
-                logger.error("Failed to send API request", e);
-                throw new ApiException(e);
-            }
+        if (response.statusCode() / 100 != 2) {
+            String body = decodeBody(response);
+            logger.error("Failed to send API request with status code: " + response.statusCode() + " and body: " + body);
+            throw new ApiException(response.statusCode(), body);
+        }
 
-            var statusCode = response.statusCode();
+        return bodyReader.read(response);
+    }
 
-            if (retryEnabledCodes.contains(statusCode)) {
-                logger.info("Received code " + statusCode + ", retrying...");
-                runBackoffTimer(tries);
-                continue;
-            }
+    /**
+     * For the many small requests sent per test case: the body is read by the client as it arrives, so no thread
+     * is held at any point of the request, and the whole page of them can be in flight at once.
+     */
+    private CompletableFuture<HttpResponse<byte[]>> sendRequestAsync(HttpRequest request) {
+        return exchangeAsync(request, HttpResponse.BodyHandlers.ofByteArray(), 0)
+                .thenCompose(response -> {
+                    if (response.statusCode() / 100 == 2) {
+                        return CompletableFuture.completedFuture(response);
+                    }
+
+                    try {
+                        String body = decodeBody(response.body(), contentEncoding(response));
+                        logger.error("Failed to send API request with status code: " + response.statusCode()
+                                + " and body: " + body);
+                        return CompletableFuture.failedFuture(new ApiException(response.statusCode(), body));
+                    } catch (ApiException e) {
+                        return CompletableFuture.failedFuture(e);
+                    }
+                });
+    }
 
-            String body = decodeBody(response.body(),
-                    response.headers().firstValue("Content-Encoding").orElse(""));
+    /**
+     * Sends the request without blocking: waiting for a slot of the host, for the response and for the backoff
+     * before a retry are all chained futures. Retried codes and connection timeouts are tried again up to
+     * MAX_RETRIES times, any other response is handed back as it is.
+     */
+    private <B> CompletableFuture<HttpResponse<B>> exchangeAsync(HttpRequest request,
+                                                                 HttpResponse.BodyHandler<B> bodyHandler, int tries) {
+
+        var controller = hostController(request.uri());
+
+        return controller.acquire()
+                .thenCompose(unused -> {
+                    var slot = new HostSlot(controller);
+                    CompletableFuture<HttpResponse<B>> pendingResponse;
+                    try {
+                        pendingResponse = client.sendAsync(request, slot.heldUntilBodyIsClosed(bodyHandler));
+                    } catch (RuntimeException e) {
+                        pendingResponse = CompletableFuture.failedFuture(e);
+                    }
+                    return pendingResponse.whenComplete((response, error) -> {
+                        if (response == null) {
+                            slot.release();
+                        } else if (!(response.body() instanceof InputStream)) {
+                            slot.release(response.statusCode());
+                        }
+                    });
+                })
+                .handle((response, error) -> error != null
+                        ? handleExchangeFailure(request, bodyHandler, tries, unwrap(error))
+                        : handleExchangeResponse(request, bodyHandler, tries, response))
+                .thenCompose(Function.identity());
+    }
 
-            if (statusCode / 100 != 2) {
-                logger.error("Failed to send API request with status code: " + response.statusCode() + " and body: " + body);
-                throw new ApiException(response.statusCode(), body);
-            }
+    private <B> CompletableFuture<HttpResponse<B>> handleExchangeFailure(HttpRequest request,
+                                                                         HttpResponse.BodyHandler<B> bodyHandler,
+                                                                         int tries, Throwable error) {
+        if (error instanceof HttpConnectTimeoutException) {
+            logger.info("Http Connection Timed out, retrying...");
+            return retryAsync(request, bodyHandler, tries, backoffMillis(tries));
+        }
+
+        logger.error("Failed to send API request", error);
+        return CompletableFuture.failedFuture(error instanceof ApiException
+                ? error
+                : new ApiException(error instanceof Exception exception ? exception : new Exception(error)));
+    }
+
+    private <B> CompletableFuture<HttpResponse<B>> handleExchangeResponse(HttpRequest request,
+                                                                          HttpResponse.BodyHandler<B> bodyHandler,
+                                                                          int tries, HttpResponse<B> response) {
+        var statusCode = response.statusCode();
+
+        if (retryEnabledCodes.contains(statusCode)) {
+            logger.info("Received code " + statusCode + ", retrying...");
+            discardBody(response);
+            retryAfter(response).ifPresent(hostController(request.uri())::onRetryAfter);
+            return retryAsync(request, bodyHandler, tries, backoffMillis(tries, response));
+        }
+
+        return CompletableFuture.completedFuture(response);
+    }
 
-            return body;
+    private <B> CompletableFuture<HttpResponse<B>> retryAsync(HttpRequest request,
+                                                              HttpResponse.BodyHandler<B> bodyHandler,
+                                                              int tries, long retryBackoff) {
+        if (tries + 1 >= MAX_RETRIES) {
+            return CompletableFuture.failedFuture(new ApiException(-1, "Failed to execute API request after "
+                    + MAX_RETRIES + " retries. No answer from server."));
+        }
+
+        logger.info("New attempt in " + retryBackoff + "ms...");
+
+        //scheduled on the shared delayer instead of sleeping, so no thread is held while waiting
+        var delayedExecutor = CompletableFuture.delayedExecutor(retryBackoff, TimeUnit.MILLISECONDS);
+
+        return CompletableFuture.runAsync(() -> logger.info("Retry triggered"), delayedExecutor)
+                .thenCompose(unused -> exchangeAsync(request, bodyHandler, tries + 1));
+    }
+
+    private static <T> T await(CompletableFuture<T> pendingRequest) throws ApiException {
+        try {
+            return pendingRequest.join();
+        } catch (CompletionException e) {
+            var cause = unwrap(e);
+            throw cause instanceof ApiException apiException
+                    ? apiException
+                    : new ApiException(cause instanceof Exception exception ? exception : new Exception(cause));
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private AdaptiveConcurrencyController hostController(URI uri) {
+        var permits = config.maxConcurrentRequestsPerHost() > 0
+                ? config.maxConcurrentRequestsPerHost()
+                : ApiConfiguration.DEFAULT_MAX_CONCURRENT_REQUESTS_PER_HOST;
+
+        return hostControllers.computeIfAbsent(uri.getHost() + ":" + uri.getPort(),
+                host -> config.adaptiveConcurrency()
+                        ? AdaptiveConcurrencyController.adaptive(permits)
+                        : AdaptiveConcurrencyController.fixed(permits));
+    }
+
+    private static String contentEncoding(HttpResponse<?> response) {
+        return response.headers().firstValue("Content-Encoding").orElse("").trim().toLowerCase(Locale.ROOT);
+    }
 
+    /**
+     * Decodes the body while it is read from the connection, so a compressed response is never held whole
+     * in memory before being decoded.
+     */
+    private String decodeBody(HttpResponse<InputStream> response) throws ApiException {
+
+        try (var body = response.body();
+             var decodedBody = new InputStreamReader(decoder(contentEncoding(response)).decodingStream(body), UTF_8)) {
+            var decoded = new StringWriter();
+            decodedBody.transferTo(decoded);
+            return decoded.toString();
+        } catch (IOException e) {
+            throw new ApiException(-1, "Failed to decode response body\n", e);
         }
+    }
+
+    /**
+     * Parses the body into the given type as it is decoded, in a single pass, so a large page of issues or
+     * executions never exists as a whole string next to the objects read from it.
+     */
+    protected <T> T decodeBody(InputStream body, String encoding, Type type) throws ApiException {
+
+        //the raw body is closed too when the decoder fails to open, which would otherwise leak the connection
+        try (var rawBody = body;
+             var decodedBody = decoder(encoding).decodingStream(rawBody);
+             var jsonReader = new JsonReader(new InputStreamReader(decodedBody, UTF_8))) {
+
+            T parsed = gson.fromJson(jsonReader, type);
+            //whatever follows the document is drained, so the connection can be reused
+            decodedBody.transferTo(OutputStream.nullOutputStream());
+            return parsed;
+        } catch (IOException | JsonParseException e) {
+            logger.error("Failed to read response body " + e.getMessage(), e);
+            throw new ApiException(-1, "Failed to decode response body\n", e);
+        }
+    }
 
-        throw new ApiException(-1, "Failed to execute API request after " + MAX_RETRIES + " retries. No answer from server.");
+    private static Decoder decoder(String encoding) {
+        return decodersMap.getOrDefault(encoding.trim().toLowerCase(Locale.ROOT), new IdentityDecoder());
+    }
+
+    //a response that is not read must still be closed, or its connection is never handed back to the client
+    private static void discardBody(HttpResponse<?> response) {
+        if (!(response.body() instanceof InputStream)) {
+            return;
+        }
+
+        try (var body = (InputStream) response.body()) {
+            body.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            logger.debug("Failed to discard response body " + e.getMessage());
+        }
     }
 
     protected String decodeBody(byte[] encodedBody, String encoding) throws ApiException {
 
-        var decoder = decodersMap.getOrDefault(encoding, new IdentityDecoder());
         try {
-            return decoder.decode(encodedBody);
+            return decoder(encoding).decode(encodedBody);
         } catch (Exception e) {
-            throw new ApiException(-1, "Failed to decode response body\n");
+            throw new ApiException(-1, "Failed to decode response body\n", e);
         }
 
     }
@@ -134,7 +345,7 @@ public abstract class BaseApi {
         HttpRequest.Builder builder = HttpRequest.newBuilder()
                 .header("Authorization", auth())
                 .header("Accept", "application/json, text/html")
-                .header("Accept-Encoding", "identity;q=1.0");
+                .header("Accept-Encoding", acceptEncoding());
 
         if (data != null) {
             builder.header("Content-Type", "application/json;charset=UTF-8");
@@ -143,6 +354,12 @@ public abstract class BaseApi {
         return requestMethod.apply(builder, uri).build();
     }
 
+    private String acceptEncoding() {
+        return config.acceptEncoding() == null || config.acceptEncoding().isBlank()
+                ? ApiConfiguration.DEFAULT_ACCEPT_ENCODING
+                : config.acceptEncoding();
+    }
+
     protected String sendHttpGet(URI uri) throws ApiException {
         var request = httpRequest(
                 (builder, uriParam) -> builder.uri(uriParam).GET(),
@@ -153,6 +370,38 @@ public abstract class BaseApi {
         return sendRequest(request);
     }
 
+    //for the large responses, which are parsed straight from the connection instead of going through a string
+    protected <T> T sendHttpGet(URI uri, Type type) throws ApiException {
+        var request = httpRequest(
+                (builder, uriParam) -> builder.uri(uriParam).GET(),
+                uri,
+                null
+        );
+
+        return sendRequest(request, response -> decodeBody(response.body(), contentEncoding(response), type));
+    }
+
+    /**
+     * Hands back the decoded body of a successful response while it is still streaming in, for callers that read
+     * it a piece at a time. The caller owns the stream and must close it, or the connection is never released.
+     */
+    protected InputStream openHttpGet(URI uri) throws ApiException {
+        var request = httpRequest(
+                (builder, uriParam) -> builder.uri(uriParam).GET(),
+                uri,
+                null
+        );
+
+        return sendRequest(request, response -> {
+            try {
+                return decoder(contentEncoding(response)).decodingStream(response.body());
+            } catch (IOException e) {
+                discardBody(response);
+                throw new ApiException(-1, "Failed to decode response body\n", e);
+            }
+        });
+    }
+
     protected String sendHttpPost(String query, Object data) throws ApiException {
         URI uri = getUri(urlPath(query));
 
@@ -181,6 +430,41 @@ public abstract class BaseApi {
         sendRequest(request);
     }
 
+    protected <T> CompletableFuture<T> sendHttpGetAsync(URI uri, Type type) {
+        var request = httpRequest(
+                (builder, uriParam) -> builder.uri(uriParam).GET(),
+                uri,
+                null
+        );
+
+        return sendRequestAsync(request).thenCompose(response -> {
+            try {
+                T parsed = decodeBody(new ByteArrayInputStream(response.body()), contentEncoding(response), type);
+                return CompletableFuture.completedFuture(parsed);
+            } catch (ApiException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        });
+    }
+
+    protected CompletableFuture<Void> sendHttpPutAsync(String query, Object data) {
+        try {
+            URI uri = getUri(urlPath(query));
+
+            var request = httpRequest(
+                    (builder, uriParam) -> builder.uri(uriParam).PUT(
+                            HttpRequest.BodyPublishers.ofString(gson.toJson(data), UTF_8)
+                    ),
+                    uri,
+                    data
+            );
+
+            return sendRequestAsync(request).thenApply(response -> null);
+        } catch (ApiException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     protected String urlPath(String query, String... strings) {
         return String.format(config.host() + query, strings);
     }
@@ -213,4 +497,59 @@ public abstract class BaseApi {
             throw new ApiException(e);
         }
     }
+
+    /**
+     * The slot a request holds on its host. A streamed body is still being sent by the host while it is read, so
+     * the slot is only handed back, and the latency recorded, once the body is closed. Buffered bodies give it
+     * back as soon as they are complete.
+     */
+    private static final class HostSlot {
+        private final AdaptiveConcurrencyController controller;
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private HostSlot(AdaptiveConcurrencyController controller) {
+            this.controller = controller;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <B> HttpResponse.BodyHandler<B> heldUntilBodyIsClosed(HttpResponse.BodyHandler<B> bodyHandler) {
+            return responseInfo -> HttpResponse.BodySubscribers.mapping(bodyHandler.apply(responseInfo),
+                    body -> body instanceof InputStream stream
+                            ? (B) new SlotReleasingInputStream(stream, () -> release(responseInfo.statusCode()))
+                            : body);
+        }
+
+        //a request that failed before its response doesn't tell anything about the host latency
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                controller.release();
+            }
+        }
+
+        private void release(int statusCode) {
+            if (released.compareAndSet(false, true)) {
+                controller.release();
+                controller.onResponse(statusCode, System.nanoTime() - startNanos);
+            }
+        }
+    }
+
+    private static final class SlotReleasingInputStream extends FilterInputStream {
+        private final Runnable onClose;
+
+        private SlotReleasingInputStream(InputStream body, Runnable onClose) {
+            super(body);
+            this.onClose = onClose;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                onClose.run();
+            }
+        }
+    }
 }
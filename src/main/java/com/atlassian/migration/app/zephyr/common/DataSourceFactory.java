@@ -1,9 +1,11 @@
 package com.atlassian.migration.app.zephyr.common;
 
+import org.apache.commons.dbcp2.BasicDataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
 
+import javax.sql.DataSource;
 import java.io.IOException;
 import java.util.Optional;
 
@@ -13,32 +15,75 @@ public class DataSourceFactory {
 
     public DriverManagerDataSource createDataSourceFromDatabaseName(String dbName) throws IOException {
 
-        Optional<DatabaseType> databaseTypeByName = DatabaseType.getDatabaseTypeByName(dbName.toLowerCase());
+        var databaseConfiguration = loadDatabaseConfiguration(dbName);
 
-        if (databaseTypeByName.isPresent()) {
+        DriverManagerDataSource datasource = new DriverManagerDataSource();
+
+        datasource.setUrl(databaseConfiguration.url());
+        datasource.setDriverClassName(databaseConfiguration.driverClassName());
+
+        if (hasSchema(databaseConfiguration)) {
+            datasource.setSchema(databaseConfiguration.schema());
+        }
+
+        datasource.setUsername(databaseConfiguration.userName());
+        datasource.setPassword(databaseConfiguration.password());
+
+        return datasource;
+    }
+
+    /**
+     * Keeps connections open between queries, validating them before reuse, and caches prepared statements per
+     * connection. Falls back to {@link #createDataSourceFromDatabaseName(String)} when pooling is disabled.
+     */
+    public DataSource createPooledDataSourceFromDatabaseName(String dbName,
+                                                             DataSourcePoolConfiguration poolConfiguration)
+            throws IOException {
+
+        if (!poolConfiguration.isEnabled()) {
+            return createDataSourceFromDatabaseName(dbName);
+        }
+
+        var databaseConfiguration = loadDatabaseConfiguration(dbName);
+
+        BasicDataSource datasource = new BasicDataSource();
+
+        datasource.setUrl(databaseConfiguration.url());
+        datasource.setDriverClassName(databaseConfiguration.driverClassName());
+
+        if (hasSchema(databaseConfiguration)) {
+            datasource.setDefaultSchema(databaseConfiguration.schema());
+        }
 
-            DriverManagerDataSource datasource = new DriverManagerDataSource();
+        datasource.setUsername(databaseConfiguration.userName());
+        datasource.setPassword(databaseConfiguration.password());
 
-            var databaseConfiguration = switch (databaseTypeByName.get()) {
+        datasource.setMaxTotal(poolConfiguration.maxSize());
+        datasource.setMaxIdle(poolConfiguration.maxSize());
+        datasource.setMinIdle(Math.min(poolConfiguration.minIdle(), poolConfiguration.maxSize()));
+
+        //without a validation query the driver's own isValid check is used, which works on every database
+        datasource.setTestOnBorrow(true);
+
+        if (poolConfiguration.statementCacheSize() > 0) {
+            datasource.setPoolPreparedStatements(true);
+            datasource.setMaxOpenPreparedStatements(poolConfiguration.statementCacheSize());
+        }
+
+        return datasource;
+    }
+
+    private DataBaseConfigurationLoader loadDatabaseConfiguration(String dbName) throws IOException {
+
+        Optional<DatabaseType> databaseTypeByName = DatabaseType.getDatabaseTypeByName(dbName.toLowerCase());
+
+        if (databaseTypeByName.isPresent()) {
+            return switch (databaseTypeByName.get()) {
                 case POSTGRESQL -> DataBaseConfigurationLoader.loadPostgresDbConfig();
                 case ORACLE -> DataBaseConfigurationLoader.loadOracleDbConfig();
                 case MSSQL, SQLSERVER -> DataBaseConfigurationLoader.loadMssqlDbConfig();
                 case MYSQL -> DataBaseConfigurationLoader.loadMysqlDbConfig();
             };
-
-            datasource.setUrl(databaseConfiguration.url());
-            datasource.setDriverClassName(databaseConfiguration.driverClassName());
-
-            if (databaseConfiguration.schema() != null
-                    && !databaseConfiguration.schema().isBlank()
-                    && !databaseConfiguration.schema().isEmpty()) {
-                datasource.setSchema(databaseConfiguration.schema());
-            }
-
-            datasource.setUsername(databaseConfiguration.userName());
-            datasource.setPassword(databaseConfiguration.password());
-
-            return datasource;
         }
 
         logger.error("Trying to connect to unknown or unsupported database: \"" + dbName + "\"." +
@@ -51,5 +96,9 @@ public class DataSourceFactory {
         throw new IOException();
     }
 
-
+    private boolean hasSchema(DataBaseConfigurationLoader databaseConfiguration) {
+        return databaseConfiguration.schema() != null
+                && !databaseConfiguration.schema().isBlank()
+                && !databaseConfiguration.schema().isEmpty();
+    }
 }
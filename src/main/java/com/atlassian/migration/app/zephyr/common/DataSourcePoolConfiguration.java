@@ -0,0 +1,19 @@
+package com.atlassian.migration.app.zephyr.common;
+
+/**
+ * Sizing of the database connection pool. A maxSize of 0 disables pooling, so every query opens its own connection.
+ */
+public record DataSourcePoolConfiguration(int minIdle, int maxSize, int statementCacheSize) {
+
+    public static final int DEFAULT_MIN_IDLE = 1;
+    public static final int DEFAULT_MAX_SIZE = 0;
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 50;
+
+    public static DataSourcePoolConfiguration disabled() {
+        return new DataSourcePoolConfiguration(DEFAULT_MIN_IDLE, 0, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+}
@@ -1,15 +1,39 @@
 package com.atlassian.migration.app.zephyr.common;
 
+import org.apache.commons.dbcp2.BasicDataSource;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
 
+import javax.sql.DataSource;
+
 public class DatabaseUtils {
 
-    public static DatabaseType defineDatabaseType(DriverManagerDataSource datasource) {
-        var dbName = DatabaseType.getDatabaseTypeByName(datasource.getUrl().split(":")[1]);
+    public static DatabaseType defineDatabaseType(DataSource datasource) {
+        var url = getUrl(datasource);
+        var dbName = DatabaseType.getDatabaseTypeByName(url.split(":")[1]);
         if (dbName.isPresent()) {
             return dbName.get();
         } else {
-            throw new IllegalArgumentException("Database type not supported: " + datasource.getUrl());
+            throw new IllegalArgumentException("Database type not supported: " + url);
+        }
+    }
+
+    public static String getUrl(DataSource datasource) {
+        if (datasource instanceof DriverManagerDataSource driverManagerDataSource) {
+            return driverManagerDataSource.getUrl();
+        }
+        if (datasource instanceof BasicDataSource pooledDataSource) {
+            return pooledDataSource.getUrl();
+        }
+        throw new IllegalArgumentException("Unsupported data source: " + datasource.getClass().getName());
+    }
+
+    public static String getSchema(DataSource datasource) {
+        if (datasource instanceof DriverManagerDataSource driverManagerDataSource) {
+            return driverManagerDataSource.getSchema();
+        }
+        if (datasource instanceof BasicDataSource pooledDataSource) {
+            return pooledDataSource.getDefaultSchema();
         }
+        throw new IllegalArgumentException("Unsupported data source: " + datasource.getClass().getName());
     }
 }
@@ -1,7 +1,22 @@
 package com.atlassian.migration.app.zephyr.common;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 @FunctionalInterface
 public interface Decoder {
 
-    String decode(byte[] encodedData) throws Exception;
+    /**
+     * Wraps the encoded body so it is decoded while it is being read, without holding it whole in memory.
+     */
+    InputStream decodingStream(InputStream encodedData) throws IOException;
+
+    default String decode(byte[] encodedData) throws Exception {
+        try (var decodedData = decodingStream(new ByteArrayInputStream(encodedData))) {
+            return new String(decodedData.readAllBytes(), UTF_8);
+        }
+    }
 }
@@ -0,0 +1,44 @@
+package com.atlassian.migration.app.zephyr.common;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * HTTP deflate is meant to be zlib wrapped, but some servers send the raw deflate stream, so the zlib header
+ * is checked before choosing how to inflate.
+ */
+public class DeflateDecoder implements Decoder {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    @Override
+    public InputStream decodingStream(InputStream encodedData) throws IOException {
+        var bufferedData = new BufferedInputStream(encodedData, BUFFER_SIZE);
+
+        bufferedData.mark(2);
+        var firstByte = bufferedData.read();
+        var secondByte = bufferedData.read();
+        bufferedData.reset();
+
+        var zlibWrapped = firstByte != -1 && secondByte != -1
+                && (firstByte & 0x0F) == 8
+                && ((firstByte << 8) | secondByte) % 31 == 0;
+
+        var inflater = new Inflater(!zlibWrapped);
+
+        //an inflater handed to the stream isn't released by it, so it is ended on close
+        return new InflaterInputStream(bufferedData, inflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,94 @@
+package com.atlassian.migration.app.zephyr.common;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counting semaphore used to cap the requests in flight to a single host, whether their caller waits
+ * for them or not.
+ * Instead of parking the caller, {@link #acquire()} hands back a future that completes once a permit is
+ * available, so waiting requests don't hold any thread. {@link WorkerPool} caps its in-flight tasks the same way.
+ * <p>
+ * The limit can be changed while requests are in flight: lowering it lets the current requests finish and only
+ * holds back new ones, raising it hands the extra permits to waiting requests right away.
+ */
+public class HostConcurrencyLimiter {
+
+    private final Deque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+    private int limit;
+    private int inFlight;
+
+    public HostConcurrencyLimiter(int permits) {
+        checkLimit(permits);
+        this.limit = permits;
+    }
+
+    public synchronized CompletableFuture<Void> acquire() {
+        if (inFlight < limit) {
+            inFlight++;
+            return CompletableFuture.completedFuture(null);
+        }
+
+        var waiter = new CompletableFuture<Void>();
+        waiters.add(waiter);
+        return waiter;
+    }
+
+    public void release() {
+        List<CompletableFuture<Void>> nextWaiters;
+
+        synchronized (this) {
+            inFlight--;
+            nextWaiters = grantPermitsToWaiters();
+        }
+
+        //completed outside the lock as they may run their stages
+        nextWaiters.forEach(waiter -> waiter.complete(null));
+    }
+
+    public void setLimit(int permits) {
+        checkLimit(permits);
+
+        List<CompletableFuture<Void>> nextWaiters;
+
+        synchronized (this) {
+            limit = permits;
+            nextWaiters = grantPermitsToWaiters();
+        }
+
+        nextWaiters.forEach(waiter -> waiter.complete(null));
+    }
+
+    public synchronized int limit() {
+        return limit;
+    }
+
+    public synchronized int availablePermits() {
+        return Math.max(0, limit - inFlight);
+    }
+
+    public synchronized int waitingRequests() {
+        return waiters.size();
+    }
+
+    //the permits are handed over straight to the next waiters
+    private List<CompletableFuture<Void>> grantPermitsToWaiters() {
+        List<CompletableFuture<Void>> nextWaiters = new ArrayList<>();
+
+        while (inFlight < limit && !waiters.isEmpty()) {
+            inFlight++;
+            nextWaiters.add(waiters.poll());
+        }
+
+        return nextWaiters;
+    }
+
+    private static void checkLimit(int permits) {
+        if (permits < 1) {
+            throw new IllegalArgumentException("Host concurrency limit must be at least 1, received: " + permits);
+        }
+    }
+}
@@ -1,10 +1,10 @@
 package com.atlassian.migration.app.zephyr.common;
 
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
 
 public class IdentityDecoder implements Decoder {
     @Override
-    public String decode(byte[] encodedData) {
-        return new String(encodedData, StandardCharsets.UTF_8);
+    public InputStream decodingStream(InputStream encodedData) {
+        return encodedData;
     }
 }
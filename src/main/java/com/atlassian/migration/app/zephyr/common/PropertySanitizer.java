@@ -1,7 +1,14 @@
 package com.atlassian.migration.app.zephyr.common;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
 public class PropertySanitizer {
 
+    private static final List<String> supportedEncodings = List.of("gzip", "deflate", "identity");
+
     public static String sanitizeAttachmentsBaseFolder(String filePath) {
 
         if (filePath == null || filePath.isBlank()) {
@@ -28,4 +35,26 @@ public class PropertySanitizer {
 
         return hostAddress;
     }
+
+    public static String sanitizeAcceptEncoding(String acceptEncoding) {
+
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return ApiConfiguration.DEFAULT_ACCEPT_ENCODING;
+        }
+
+        var encodings = Arrays.stream(acceptEncoding.split(","))
+                .map(encoding -> encoding.trim().toLowerCase(Locale.ROOT))
+                .filter(encoding -> !encoding.isEmpty())
+                .toList();
+
+        for (var encoding : encodings) {
+            //quality values such as "gzip;q=0.8" are kept as they are
+            if (!supportedEncodings.contains(encoding.split(";")[0].trim())) {
+                throw new IllegalArgumentException("Unsupported response encoding: " + encoding
+                        + ", Supported values: " + supportedEncodings);
+            }
+        }
+
+        return encodings.stream().collect(Collectors.joining(", "));
+    }
 }
@@ -0,0 +1,136 @@
+package com.atlassian.migration.app.zephyr.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs units of migration work either on a fixed pool of platform threads or on one virtual thread per task,
+ * with a global cap on how many tasks are in flight at once. Submitting blocks the caller while the cap is
+ * reached, which keeps a page worth of work from piling up in memory.
+ */
+public class WorkerPool implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkerPool.class);
+
+    private static final String VIRTUAL_THREAD_EXECUTOR_FACTORY = "newVirtualThreadPerTaskExecutor";
+
+    private final ExecutorService executor;
+    private final HostConcurrencyLimiter inFlightTasks;
+    private final ExecutionMode executionMode;
+
+    private WorkerPool(ExecutorService executor, int maxInFlightTasks, ExecutionMode executionMode) {
+        this.executor = executor;
+        this.inFlightTasks = new HostConcurrencyLimiter(maxInFlightTasks);
+        this.executionMode = executionMode;
+    }
+
+    public static WorkerPool platform(int threads, String namePrefix) {
+        return new WorkerPool(platformExecutor(threads, namePrefix), threads, ExecutionMode.PLATFORM);
+    }
+
+    //Virtual threads are only available from Java 21 onwards, so the executor is looked up at runtime to keep
+    //the tool building and running on Java 17, where it falls back to a platform pool of the same size
+    public static WorkerPool virtual(int maxInFlightTasks, String namePrefix) {
+        try {
+            var virtualExecutor = (ExecutorService) Executors.class.getMethod(VIRTUAL_THREAD_EXECUTOR_FACTORY).invoke(null);
+            return new WorkerPool(virtualExecutor, maxInFlightTasks, ExecutionMode.VIRTUAL);
+        } catch (ReflectiveOperationException e) {
+            logger.warn("Virtual threads require Java 21 or newer, running on " + maxInFlightTasks
+                    + " platform threads instead.");
+            return platform(maxInFlightTasks, namePrefix);
+        }
+    }
+
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        inFlightTasks.acquire().join();
+
+        return start(task);
+    }
+
+    /**
+     * Same as {@link #submit(Callable)} without blocking the caller: while the cap is reached the task waits in
+     * line and starts once a running task finishes. Meant for tasks handed over from the threads of another pool,
+     * which would otherwise sit idle until this one has room.
+     */
+    public <T> CompletableFuture<T> enqueue(Callable<T> task) {
+        return inFlightTasks.acquire().thenCompose(permit -> start(task));
+    }
+
+    public ExecutionMode executionMode() {
+        return executionMode;
+    }
+
+    //tasks already started run to completion, the ones still waiting for room fail once they get it
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    //runs a task the caller already took a slot of the cap for, handing it back once the task is done
+    private <T> CompletableFuture<T> start(Callable<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return task.call();
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                } finally {
+                    inFlightTasks.release();
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            inFlightTasks.release();
+            throw e;
+        }
+    }
+
+    private static ExecutorService platformExecutor(int threads, String namePrefix) {
+        return Executors.newFixedThreadPool(threads, daemonThreadFactory(namePrefix));
+    }
+
+    //daemon threads so a finished migration doesn't keep the JVM alive waiting for idle workers
+    private static ThreadFactory daemonThreadFactory(String namePrefix) {
+        var threadCounter = new AtomicInteger();
+        return runnable -> {
+            var thread = new Thread(runnable, namePrefix + "-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public enum ExecutionMode {
+        PLATFORM("platform"),
+        VIRTUAL("virtual");
+
+        private final String modeName;
+
+        ExecutionMode(String modeName) {
+            this.modeName = modeName;
+        }
+
+        public static ExecutionMode getExecutionModeByName(String name) {
+            return Arrays.stream(values())
+                    .filter(mode -> mode.modeName.equalsIgnoreCase(name))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unsupported execution mode: " + name
+                            + ", Supported values: " + Arrays.toString(values())));
+        }
+
+        @Override
+        public String toString() {
+            return modeName;
+        }
+    }
+}
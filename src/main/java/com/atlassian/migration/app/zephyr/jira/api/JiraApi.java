@@ -21,14 +21,21 @@ public class JiraApi extends BaseApi {
     public static final String GET_PROJECT_BY_KEY_OR_ID_ENDPOINT = "/rest/api/2/project/%s";
     public static final String GET_PROJECT_WITH_HISTORICAL_KEYS = GET_PROJECT_BY_KEY_OR_ID_ENDPOINT + "?expand=projectKeys";
     public static final String GET_ISSUE_BY_ID_ENDPOINT = "/rest/api/2/issue/%s";
+    public static final String GET_ISSUE_ATTACHMENTS_BY_ID_ENDPOINT = GET_ISSUE_BY_ID_ENDPOINT + "?fields=attachment";
     public static final String RENDER_JIRA_TEXT_FORMATTING = "/rest/api/1.0/render";
 
+    //only the fields read by ScaleTestCasePayloadFacade and AttachmentsMigrator, so custom fields aren't shipped with every page
+    public static final String SEARCH_ISSUE_FIELDS = String.join(",", List.of(
+            "issuetype", "summary", "description", "labels", "reporter", "issuelinks", "components", "status",
+            "priority", "attachment"));
+
     public JiraApi(ApiConfiguration config) {
         super(config);
     }
 
     public int fetchTotalIssuesByProjectName(String projectName) throws IOException {
-        return fetchTestCreatedOrderEntry(projectName, null, null).total();
+        //no issue is needed to know the total, only the count comes back
+        return fetchTestCreatedOrderEntry(projectName, 0, 0).total();
     }
 
     public GetProjectResponse getProjectById(String projectId) throws IOException {
@@ -50,7 +57,8 @@ public class JiraApi extends BaseApi {
     }
 
     public List<Attachment> getIssueAttachmentsByIssueId(String id) throws IOException {
-        return getIssueById(id).fields().attachment;
+        var response = sendHttpGet(getUri(urlPath(GET_ISSUE_ATTACHMENTS_BY_ID_ENDPOINT, id)));
+        return gson.fromJson(response, JiraIssuesResponse.class).fields().attachment;
     }
 
     public GetProjectResponse getProject(String idOrKey) throws IOException {
@@ -62,8 +70,32 @@ public class JiraApi extends BaseApi {
         return fetchTestCreatedOrderEntry(projectName, startAt, maxResults).issues();
     }
 
+    /**
+     * Keyset pagination: fetches the issues right after afterIssueId (or from the first one when it is null),
+     * which keeps the search cost flat no matter how deep into the project the migration is.
+     */
+    public List<JiraIssuesResponse> fetchIssuesOrderedById(String projectName, String afterIssueId, Integer maxResults) throws IOException {
+        return fetchIssuesByJql(0, maxResults, testIdOrderJql(projectName, afterIssueId)).issues();
+    }
+
+    /**
+     * Iterates over the tests of the project from startAt, reading search pages of pageSize issues one issue at
+     * a time, so large pages cost fewer requests without being held in memory.
+     */
+    public JiraIssueIterator iterateIssuesOrderedByCreatedDate(String projectName, int startAt, int pageSize) {
+        return new JiraIssueIterator((pageStart, afterIssueId) -> openHttpGet(
+                uri(JIRA_SEARCH_ISSUES_ENDPOINT, searchParams(pageStart, pageSize, testCreatedOrderJql(projectName)))),
+                startAt, null, gson);
+    }
+
+    public JiraIssueIterator iterateIssuesOrderedById(String projectName, String afterIssueId, int pageSize) {
+        return new JiraIssueIterator((pageStart, lastIssueId) -> openHttpGet(
+                uri(JIRA_SEARCH_ISSUES_ENDPOINT, searchParams(0, pageSize, testIdOrderJql(projectName, lastIssueId)))),
+                0, afterIssueId, gson);
+    }
+
     public FetchJiraIssuesResponse fetchTestCreatedOrderEntry(String projectName, Integer startAt, Integer maxResults) throws IOException {
-        return fetchIssuesByJql(startAt, maxResults, String.format("project = %s AND issuetype = Test ORDER BY createdDate ASC", projectName));
+        return fetchIssuesByJql(startAt, maxResults, testCreatedOrderJql(projectName));
     }
 
 
@@ -86,16 +118,33 @@ public class JiraApi extends BaseApi {
 
     private FetchJiraIssuesResponse fetchIssuesByJql(Integer startAt, Integer maxResults, String jql) throws IOException {
 
+        //search pages are the largest responses of the migration, so they are parsed as they stream in
+        return sendHttpGet(
+                uri(JIRA_SEARCH_ISSUES_ENDPOINT, searchParams(startAt, maxResults, jql)),
+                FetchJiraIssuesResponse.class
+        );
+    }
+
+    private static Map<String, Object> searchParams(Integer startAt, Integer maxResults, String jql) {
         Map<String, Object> params = new HashMap<>();
         params.put("jql", jql);
         params.put("startAt", startAt);
         params.put("maxResults", maxResults);
+        params.put("fields", SEARCH_ISSUE_FIELDS);
+        return params;
+    }
 
-        var response = sendHttpGet(
-                uri(JIRA_SEARCH_ISSUES_ENDPOINT, params)
-        );
+    private static String testCreatedOrderJql(String projectName) {
+        return String.format("project = %s AND issuetype = Test ORDER BY createdDate ASC", projectName);
+    }
 
-        return gson.fromJson(response, FetchJiraIssuesResponse.class);
+    private static String testIdOrderJql(String projectName, String afterIssueId) {
+        if (afterIssueId == null) {
+            return String.format("project = %s AND issuetype = Test ORDER BY id ASC", projectName);
+        }
+        //parsed so only a numeric id ever ends up in the query
+        return String.format("project = %s AND issuetype = Test AND id > %d ORDER BY id ASC", projectName,
+                Long.parseLong(afterIssueId));
     }
 
 }
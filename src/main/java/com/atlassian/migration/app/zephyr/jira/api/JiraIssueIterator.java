@@ -0,0 +1,213 @@
+package com.atlassian.migration.app.zephyr.jira.api;
+
+import com.atlassian.migration.app.zephyr.jira.model.JiraIssuesResponse;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Iterates over the issues found by a Jira search one at a time. Each search page is spooled to a temporary file
+ * as it is downloaded, so the connection and its host slot are released right away rather than held while the
+ * issues are migrated, and the page never sits whole in memory. Issues are parsed from the file only when they are
+ * asked for, and the page fields are read as they go past, wherever they come in the page. The next search page is
+ * requested once the current one is read to its end.
+ * <p>
+ * Every page starts both at the offset and right after the id of the last issue read, the page opener picks
+ * whichever its pagination needs. Jira may return fewer issues than asked for, so reading only stops once a page
+ * reaches the total its response reports, or on a page without issues.
+ */
+public class JiraIssueIterator implements Iterator<JiraIssuesResponse>, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(JiraIssueIterator.class);
+
+    private static final String ISSUES_FIELD = "issues";
+    private static final String START_AT_FIELD = "startAt";
+    private static final String TOTAL_FIELD = "total";
+
+    private final PageOpener pageOpener;
+    private final Gson gson;
+
+    private JsonReader currentPage;
+    private int nextStartAt;
+    private String lastIssueId;
+    private int readInPage = 0;
+    private int pageStartAt = 0;
+    private int pageTotal = -1;
+    private boolean lastPageRead = false;
+    private JiraIssuesResponse nextIssue;
+
+    JiraIssueIterator(PageOpener pageOpener, int startAt, String afterIssueId, Gson gson) {
+        this.pageOpener = pageOpener;
+        this.nextStartAt = startAt;
+        this.lastIssueId = afterIssueId;
+        this.gson = gson;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextIssue != null) {
+            return true;
+        }
+
+        try {
+            while (currentPage != null || !lastPageRead) {
+                if (currentPage == null) {
+                    openNextPage();
+                    continue;
+                }
+
+                if (currentPage.hasNext()) {
+                    nextIssue = gson.fromJson(currentPage, JiraIssuesResponse.class);
+                    readInPage++;
+                    return true;
+                }
+
+                closeCurrentPage();
+            }
+
+            return false;
+        } catch (IOException e) {
+            close();
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public JiraIssuesResponse next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more issues to read");
+        }
+
+        var issue = nextIssue;
+        nextIssue = null;
+        lastIssueId = issue.id();
+        return issue;
+    }
+
+    /**
+     * Reads up to maxIssues issues, fewer only once the search has no more of them.
+     */
+    public List<JiraIssuesResponse> next(int maxIssues) {
+        List<JiraIssuesResponse> issues = new ArrayList<>(maxIssues);
+
+        while (issues.size() < maxIssues && hasNext()) {
+            issues.add(next());
+        }
+
+        return issues;
+    }
+
+    public Stream<JiraIssuesResponse> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false)
+                .onClose(this::close);
+    }
+
+    @Override
+    public void close() {
+        if (currentPage != null) {
+            try {
+                currentPage.close();
+            } catch (IOException e) {
+                logger.debug("Failed to close Jira search page " + e.getMessage());
+            }
+            currentPage = null;
+        }
+        lastPageRead = true;
+    }
+
+    //leaves the reader right inside the issues array, reading the page fields that come before it
+    private void openNextPage() throws IOException {
+        var spooledPage = spoolNextPage();
+
+        //the spooled page is deleted once its reader is closed
+        var page = new JsonReader(new InputStreamReader(new BufferedInputStream(
+                Files.newInputStream(spooledPage, StandardOpenOption.DELETE_ON_CLOSE)), UTF_8));
+        page.setLenient(true);
+        currentPage = page;
+        readInPage = 0;
+        pageStartAt = 0;
+        pageTotal = -1;
+
+        page.beginObject();
+        while (page.hasNext()) {
+            var name = page.nextName();
+            if (ISSUES_FIELD.equals(name) && page.peek() == JsonToken.BEGIN_ARRAY) {
+                page.beginArray();
+                return;
+            }
+            readPageField(page, name);
+        }
+
+        //a page without issues ends the search
+        lastPageRead = true;
+        close();
+    }
+
+    private Path spoolNextPage() throws IOException {
+        var spooledPage = Files.createTempFile("jira-search-page", ".json");
+
+        try (var pageStream = pageOpener.open(nextStartAt, lastIssueId)) {
+            Files.copy(pageStream, spooledPage, StandardCopyOption.REPLACE_EXISTING);
+            return spooledPage;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(spooledPage);
+            throw e;
+        }
+    }
+
+    private void closeCurrentPage() throws IOException {
+        //the page fields may also come after the issues
+        currentPage.endArray();
+        while (currentPage.hasNext()) {
+            readPageField(currentPage, currentPage.nextName());
+        }
+
+        nextStartAt += readInPage;
+        var searchEnded = readInPage == 0 || (pageTotal >= 0 && pageStartAt + readInPage >= pageTotal);
+
+        currentPage.close();
+        currentPage = null;
+        lastPageRead = searchEnded;
+    }
+
+    private void readPageField(JsonReader page, String name) throws IOException {
+        if (START_AT_FIELD.equals(name) && page.peek() == JsonToken.NUMBER) {
+            pageStartAt = page.nextInt();
+        } else if (TOTAL_FIELD.equals(name) && page.peek() == JsonToken.NUMBER) {
+            pageTotal = page.nextInt();
+        } else {
+            page.skipValue();
+        }
+    }
+
+    /**
+     * Opens the search page starting at startAt, or right after afterIssueId, which is null until an issue
+     * was read.
+     */
+    @FunctionalInterface
+    public interface PageOpener {
+        InputStream open(int startAt, String afterIssueId) throws IOException;
+    }
+}
@@ -1,18 +1,27 @@
 package com.atlassian.migration.app.zephyr.migration;
 
+import com.atlassian.migration.app.zephyr.common.WorkerPool;
 import com.atlassian.migration.app.zephyr.migration.model.AttachmentAssociationData;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.PosixFilePermissions;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
@@ -20,78 +29,264 @@ import static java.nio.file.Paths.get;
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 
 
-public class AttachmentsCopier {
+public class AttachmentsCopier implements AutoCloseable {
 
     private static final String TEST_STEP_ENTITY = "teststep";
     private static final String TEST_EXECUTION_ENTITY = "schedule";
     private static final String FILES_FULL_PERMISSION = "rwxrwxrwx";
+    private static final List<String> CLONING_UNSUPPORTED_MESSAGES = List.of("not supported",
+            "invalid cross-device link", "unrecognized option", "illegal option", "invalid option");
+    private static final String CROSS_DEVICE_LINK_MESSAGE = "cross-device link";
+    public static final int DEFAULT_COPY_THREADS = 1;
+    public static final TransferMode DEFAULT_TRANSFER_MODE = TransferMode.COPY;
     private final String DESTINATION_DIR_PATH;
     private final String baseDir;
-    private final Map<String, ProjectHistoricalKeys> projectHistoricalKeysMap = new HashMap<>();
+    private final Map<String, ProjectHistoricalKeys> projectHistoricalKeysMap = new ConcurrentHashMap<>();
+    //one per project key directory, read the first time an attachment is looked for in it
+    private final Map<Path, AttachmentsDirectoryIndex> directoryIndexes = new ConcurrentHashMap<>();
+    //null copies on the calling thread, one file after the other
+    private final WorkerPool copyPool;
+    private final AtomicReference<CopySummary> runSummary = new AtomicReference<>(CopySummary.EMPTY);
+    private volatile Path destinationDir;
+    private final TransferMode transferMode;
+    //set on the first failure, as the next files live on the same volumes and would fail the same way
+    private volatile boolean hardLinksUnsupported = false;
+    //only set when cp tells the volumes can't clone, see cloneFile
+    private volatile boolean clonesUnsupported = false;
     private static final Logger logger = LoggerFactory.getLogger(AttachmentsCopier.class);
 
     public AttachmentsCopier(String baseDir) {
+        this(baseDir, DEFAULT_COPY_THREADS);
+    }
+
+    //copies are mostly spent waiting on the file system, more so on network storage, so they run side by side
+    public AttachmentsCopier(String baseDir, int copyThreads) {
+        this(baseDir, copyThreads, DEFAULT_TRANSFER_MODE);
+    }
+
+    public AttachmentsCopier(String baseDir, int copyThreads, TransferMode transferMode) {
         this.baseDir = baseDir;
+        this.transferMode = transferMode;
 
         DESTINATION_DIR_PATH = baseDir + "kanoahTests/";
+
+        this.copyPool = copyThreads > 1 ? WorkerPool.platform(copyThreads, "attachment-copy") : null;
     }
 
 
-    public void copyAttachments(List<AttachmentAssociationData> attachmentsMapped, String projectKey,
-                                List<String> historicalProjectKeys) throws java.io.IOException {
+    public CopySummary copyAttachments(List<AttachmentAssociationData> attachmentsMapped, String projectKey,
+                                       List<String> historicalProjectKeys) throws java.io.IOException {
 
         var projectHistoricalKeys = projectHistoricalKeysMap.computeIfAbsent(projectKey, key ->
                 getOriginalProjectKey(key, historicalProjectKeys));
 
         if (projectHistoricalKeys == null) {
-            return;
+            return CopySummary.EMPTY;
         }
 
-        String originFilePath = "";
-        for (AttachmentAssociationData attachment : attachmentsMapped) {
-            String entityId = attachment.getSquadOriginEntity().id();
+        long startTimeMillis = System.currentTimeMillis();
+        var summary = CopySummary.EMPTY;
+        Queue<String> missingAttachments = new ConcurrentLinkedQueue<>();
 
-            switch (attachment.getDestinationEntityType()) {
-                case TEST_STEP -> originFilePath = getSquadEntityAttachmentPath(projectHistoricalKeys.keysHoldingData,
-                        attachment.getFileName(),
-                        entityId,
-                        TEST_STEP_ENTITY);
-
-                case TEST_EXECUTION ->
-                        originFilePath = getSquadEntityAttachmentPath(projectHistoricalKeys.keysHoldingData,
-                                attachment.getFileName(),
-                                entityId,
-                                TEST_EXECUTION_ENTITY);
+        if (copyPool == null) {
+            for (AttachmentAssociationData attachment : attachmentsMapped) {
+                summary = summary.plus(copyAttachment(attachment, projectHistoricalKeys, missingAttachments));
+            }
+        } else {
+            List<CompletableFuture<CopySummary>> pendingCopies = new ArrayList<>(attachmentsMapped.size());
 
-                case TEST_CASE -> {
-                    String issueKeyAndNum = attachment.getSquadOriginEntity().key();
-                    originFilePath = getJiraEntityAttachmentPath(issueKeyAndNum, projectHistoricalKeys.originalKey,
-                            attachment.getFileName(), attachment.getSquadOriginEntity().id());
-                }
+            for (AttachmentAssociationData attachment : attachmentsMapped) {
+                pendingCopies.add(copyPool.submit(() ->
+                        copyAttachment(attachment, projectHistoricalKeys, missingAttachments)));
             }
 
-            if (originFilePath.isBlank() || originFilePath.isEmpty()) {
-                continue;
+            for (var pendingCopy : pendingCopies) {
+                summary = summary.plus(pendingCopy.join());
             }
+        }
+
+        if (!missingAttachments.isEmpty()) {
+            logger.warn("Couldn't find " + missingAttachments.size() + " attachments in any of the project directories: "
+                    + String.join(", ", missingAttachments));
+        }
+
+        var total = runSummary.accumulateAndGet(summary, CopySummary::plus);
+
+        logger.info("Attachments copy: " + summary + " in " + (System.currentTimeMillis() - startTimeMillis)
+                + "ms. So far: " + total + ".");
+
+        return summary;
+    }
+
+    public CopySummary runSummary() {
+        return runSummary.get();
+    }
+
+    //copies already submitted still complete
+    @Override
+    public void close() {
+        if (copyPool != null) {
+            copyPool.close();
+        }
+    }
+
+    //the directories of a migrated project are not looked into again, so their indexes and keys can go
+    public void releaseProject(String projectKey) {
+        var projectHistoricalKeys = projectHistoricalKeysMap.remove(projectKey);
 
+        if (projectHistoricalKeys != null) {
+            projectHistoricalKeys.keysHoldingData.forEach(key -> directoryIndexes.remove(getProjectAttachmentsDir(key)));
+            directoryIndexes.remove(getProjectAttachmentsDir(projectHistoricalKeys.originalKey));
+        }
+    }
+
+    private CopySummary copyAttachment(AttachmentAssociationData attachment,
+                                       ProjectHistoricalKeys projectHistoricalKeys,
+                                       Queue<String> missingAttachments) {
+        String entityId = attachment.getSquadOriginEntity().id();
+
+        String originFilePath = switch (attachment.getDestinationEntityType()) {
+            case TEST_STEP -> getSquadEntityAttachmentPath(projectHistoricalKeys.keysHoldingData,
+                    attachment.getFileName(),
+                    entityId,
+                    TEST_STEP_ENTITY);
+
+            case TEST_EXECUTION -> getSquadEntityAttachmentPath(projectHistoricalKeys.keysHoldingData,
+                    attachment.getFileName(),
+                    entityId,
+                    TEST_EXECUTION_ENTITY);
+
+            case TEST_CASE -> getJiraEntityAttachmentPath(attachment.getSquadOriginEntity().key(),
+                    projectHistoricalKeys.originalKey, attachment.getFileName(), entityId);
+        };
+
+        if (originFilePath.isBlank()) {
+            missingAttachments.add(attachment.getFileName() + " ("
+                    + attachment.getDestinationEntityType().name().toLowerCase(Locale.ROOT).replace('_', ' ') + " " + entityId + ")");
+            return CopySummary.MISSING;
+        }
+
+        try {
             copyFile(originFilePath, attachment.getFileName());
+            return CopySummary.copied(attachment.getSize());
+        } catch (IOException e) {
+            logger.error("Error copying file: " + originFilePath + " " + e.getMessage());
+            return CopySummary.FAILED;
         }
     }
 
     void copyFile(String originFilePath, String fileName) throws IOException {
 
-        var destinationDir = setupDestinationDir(DESTINATION_DIR_PATH);
+        Path originFile = Paths.get(originFilePath);
+        Path destinationFilePath = destinationDir().resolve(fileName);
 
-        Path destinationFilePath = get(new StringBuilder(destinationDir.toString())
-                .append("/")
-                .append(fileName).toString());
+        //a hard link shares the permissions of the Jira attachment itself, which must be left as they are
+        if (linkFile(originFile, destinationFilePath)) {
+            return;
+        }
+
+        if (!cloneFile(originFile, destinationFilePath)) {
+            Files.copy(originFile, destinationFilePath, REPLACE_EXISTING);
+        }
+        Files.setPosixFilePermissions(destinationFilePath, PosixFilePermissions.fromString(FILES_FULL_PERMISSION));
+    }
+
+    /**
+     * Only metadata is written, but both paths must be on the same volume. Hard links are only given up for the
+     * rest of the run when the volumes or the file system can't link at all, any other failure only sends that
+     * one file to a clone or a copy.
+     */
+    private boolean linkFile(Path originFile, Path destinationFilePath) {
+        if (hardLinksUnsupported || (transferMode != TransferMode.HARDLINK && transferMode != TransferMode.AUTO)) {
+            return false;
+        }
 
         try {
-            Files.copy(Paths.get(originFilePath), destinationFilePath, REPLACE_EXISTING);
-            Files.setPosixFilePermissions(destinationFilePath, PosixFilePermissions.fromString(FILES_FULL_PERMISSION));
+            Files.deleteIfExists(destinationFilePath);
+            Files.createLink(destinationFilePath, originFile);
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            var fallback = transferMode == TransferMode.AUTO ? "cloning or copying" : "copying";
+
+            if (isHardLinkUnsupported(e)) {
+                hardLinksUnsupported = true;
+                logger.warn("Can't hard link attachments into " + destinationFilePath.getParent() + " ("
+                        + e.getMessage() + "), " + fallback + " them instead.");
+            } else {
+                logger.debug("Failed to hard link " + originFile + " (" + e.getMessage() + "), " + fallback
+                        + " it instead.");
+            }
+            return false;
+        }
+    }
+
+    //EXDEV when the attachments and the destination are on different volumes
+    static boolean isHardLinkUnsupported(Exception linkFailure) {
+        if (linkFailure instanceof UnsupportedOperationException) {
+            return true;
+        }
+
+        return linkFailure instanceof FileSystemException fileSystemException
+                && fileSystemException.getReason() != null
+                && fileSystemException.getReason().toLowerCase(Locale.ROOT).contains(CROSS_DEVICE_LINK_MESSAGE);
+    }
+
+    /**
+     * Copy-on-write clone, the file system shares the blocks until one of the files changes. Java has no API for
+     * it, so it goes through GNU cp, one process per attachment, which costs more than a plain copy on small files.
+     * Cloning is only given up for the rest of the run when cp says the volumes can't do it, or that it isn't
+     * GNU cp. Any other failure only sends that one file to a plain copy.
+     */
+    private boolean cloneFile(Path originFile, Path destinationFilePath) {
+        if (clonesUnsupported || (transferMode != TransferMode.REFLINK && transferMode != TransferMode.AUTO)) {
+            return false;
+        }
+
+        try {
+            var clone = new ProcessBuilder("cp", "--reflink=always", "-f", originFile.toString(),
+                    destinationFilePath.toString())
+                    .redirectErrorStream(true)
+                    .start();
+
+            var output = new String(clone.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+
+            if (clone.waitFor() == 0) {
+                return true;
+            }
+
+            if (isCloningUnsupported(output)) {
+                clonesUnsupported = true;
+                logger.warn("Can't clone attachments into " + destinationFilePath.getParent() + " (" + output
+                        + "), copying them instead.");
+            } else {
+                logger.debug("Failed to clone " + originFile + " (" + output + "), copying it instead.");
+            }
         } catch (IOException e) {
-            logger.error("Error copying file: " + originFilePath);
+            clonesUnsupported = true;
+            logger.warn("Can't clone attachments (" + e.getMessage() + "), copying them instead.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+        return false;
+    }
+
+    //what cp prints when no file of these volumes can be cloned, or when it doesn't know --reflink
+    static boolean isCloningUnsupported(String cpOutput) {
+        var output = cpOutput.toLowerCase(Locale.ROOT);
+
+        return CLONING_UNSUPPORTED_MESSAGES.stream().anyMatch(output::contains);
+    }
+
+    //set up on the first copy of the run only, instead of checking and granting permissions for every file
+    private Path destinationDir() throws IOException {
+        if (destinationDir == null) {
+            synchronized (this) {
+                if (destinationDir == null) {
+                    destinationDir = setupDestinationDir(DESTINATION_DIR_PATH);
+                }
+            }
+        }
+        return destinationDir;
     }
 
     String calculateBucket(int issueNum) {
@@ -133,7 +328,7 @@ public class AttachmentsCopier {
             return originPath;
         }
 
-        logger.warn("Couldn't find the attachment " + attachmentName
+        logger.debug("Couldn't find the attachment " + attachmentName
                 + " from Test Case " + entityId
                 + " in any of the project directories.");
 
@@ -150,7 +345,7 @@ public class AttachmentsCopier {
                 return targetPath;
             }
         }
-        logger.warn("Couldn't find the attachment " + attachmentName
+        logger.debug("Couldn't find the attachment " + attachmentName
                 + " from " + entityType + " with id " + entityId
                 + " in any of the project directories.");
         return "";
@@ -158,7 +353,17 @@ public class AttachmentsCopier {
 
     boolean isPathToAttachment(String targetPath) {
         var path = get(targetPath);
-        return Files.exists(path);
+        var baseDirPath = get(baseDir);
+
+        //attachment paths are looked up in the index of their project key directory, anything else on disk
+        if (!path.startsWith(baseDirPath)
+                || baseDirPath.relativize(path).getNameCount() != AttachmentsDirectoryIndex.ATTACHMENT_DEPTH + 1) {
+            return Files.exists(path);
+        }
+
+        var projectDir = baseDirPath.resolve(baseDirPath.relativize(path).getName(0));
+
+        return directoryIndexes.computeIfAbsent(projectDir, AttachmentsDirectoryIndex::new).contains(path);
     }
 
     ProjectHistoricalKeys getOriginalProjectKey(String currKey, List<String> historicalKeys) {
@@ -230,4 +435,56 @@ public class AttachmentsCopier {
     record ProjectHistoricalKeys(String currKey, String originalKey, List<String> keysHoldingData) {
     }
 
+    public enum TransferMode {
+        COPY("copy"),
+        HARDLINK("hardlink"),
+        REFLINK("reflink"),
+        AUTO("auto");
+
+        private final String modeName;
+
+        TransferMode(String modeName) {
+            this.modeName = modeName;
+        }
+
+        public static TransferMode getTransferModeByName(String name) {
+            return Arrays.stream(values())
+                    .filter(mode -> mode.modeName.equalsIgnoreCase(name))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unsupported attachment transfer: " + name
+                            + ", Supported values: " + Arrays.toString(values())));
+        }
+
+        @Override
+        public String toString() {
+            return modeName;
+        }
+    }
+
+    public record CopySummary(int copied, int missing, int failed, long copiedBytes) {
+
+        static final CopySummary EMPTY = new CopySummary(0, 0, 0, 0);
+        static final CopySummary MISSING = new CopySummary(0, 1, 0, 0);
+        static final CopySummary FAILED = new CopySummary(0, 0, 1, 0);
+
+        static CopySummary copied(String size) {
+            try {
+                return new CopySummary(1, 0, 0, Long.parseLong(size));
+            } catch (NumberFormatException e) {
+                return new CopySummary(1, 0, 0, 0);
+            }
+        }
+
+        CopySummary plus(CopySummary other) {
+            return new CopySummary(copied + other.copied, missing + other.missing, failed + other.failed,
+                    copiedBytes + other.copiedBytes);
+        }
+
+        @Override
+        public String toString() {
+            return copied + " copied (" + copiedBytes / (1024 * 1024) + " MB), " + missing + " missing, "
+                    + failed + " failed";
+        }
+    }
+
 }
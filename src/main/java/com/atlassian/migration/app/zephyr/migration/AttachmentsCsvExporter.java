@@ -3,71 +3,225 @@ package com.atlassian.migration.app.zephyr.migration;
 import com.atlassian.migration.app.zephyr.migration.model.AttachmentAssociationData;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.supercsv.io.CsvBeanWriter;
-import org.supercsv.prefs.CsvPreference;
 
 import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
-public class AttachmentsCsvExporter {
+/**
+ * Writes the mapped attachments to a CSV file that stays open for the whole run. Rows are buffered and reach the
+ * file at most every FLUSH_INTERVAL and when it is closed. {@link #flush()} forces them to the disk, which the
+ * migration does before recording a page as done, so any row that failed to be written fails its page instead.
+ */
+public class AttachmentsCsvExporter implements Closeable {
 
     private static final Logger logger = LoggerFactory.getLogger(AttachmentsCsvExporter.class);
+
+    static final String[] CSV_HEADER = {"FILE_NAME", "FILE_SIZE", "NAME", "PROJECT_ID", "USER_KEY", "TEMPORARY",
+            "CREATED_ON", "MIME_TYPE", "TEST_CASE_ID", "STEP_ID", "TEST_RESULT_ID"};
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long FLUSH_INTERVAL = TimeUnit.SECONDS.toNanos(5);
+    //same line ending as the CSV writer used before, so resumed runs append matching rows
+    private static final String LINE_SEPARATOR = "\r\n";
+
     private final String fileName;
-    private Path destinationPath = null;
+    private final boolean appendToExisting;
+    private Writer writer = null;
+    private FileChannel channel = null;
+    private long lastFlushNanos;
+    private boolean closed = false;
 
     public AttachmentsCsvExporter(String fileName) {
-        this.fileName = fileName;
+        this(fileName, false);
+    }
 
+    //a resumed migration keeps the attachments mapped by the previous run instead of starting a new file
+    public AttachmentsCsvExporter(String fileName, boolean appendToExisting) {
+        this.fileName = fileName;
+        this.appendToExisting = appendToExisting;
     }
 
-    public void dump(List<AttachmentAssociationData> attachmentAssociationData, String[] headers, String[] headerMapping)
+    //pipelined pages export issue by issue from several threads, which must not interleave their rows
+    public synchronized void dump(List<AttachmentAssociationData> attachmentAssociationData)
             throws URISyntaxException, IOException {
 
-        if (destinationPath == null) {
-            destinationPath = setupFile(this.fileName, headers);
+        if (closed) {
+            throw new IOException("Mapped attachments file " + fileName + " is already closed");
         }
 
-        try (CsvBeanWriter csvBeanWriter = new CsvBeanWriter(
-                new BufferedWriter(new FileWriter(destinationPath.toString(), StandardCharsets.UTF_8, true))
-                , CsvPreference.STANDARD_PREFERENCE
-        )) {
+        if (writer == null) {
+            writer = openFile(this.fileName);
+        }
 
+        try {
             for (var attachmentMapped : attachmentAssociationData) {
-
-                csvBeanWriter.write(attachmentMapped, headerMapping);
+                writeRow(writer, attachmentMapped);
             }
 
+            if (System.nanoTime() - lastFlushNanos >= FLUSH_INTERVAL) {
+                flushWriter();
+            }
         } catch (IOException e) {
             logger.error("Failed to export Attachments Map to CSV file " + e.getMessage(), e);
+            throw e;
         }
     }
 
-    private Path setupFile(String fileName, String[] headers) throws URISyntaxException, IOException {
+    /**
+     * Pushes the buffered rows to the file and forces them to the disk, before the migration records their page
+     * as done.
+     */
+    public synchronized void flush() throws IOException {
+        if (writer != null && !closed) {
+            flushWriter();
+            channel.force(false);
+        }
+    }
 
-        Path destinationPath = getCurrentPath().resolve(fileName);
-        logger.info("Creating file for mapped attachments at: " + destinationPath);
-        Files.deleteIfExists(destinationPath);
-        Files.createFile(destinationPath);
+    /**
+     * Length of the file once every row dumped so far is written to it, -1 when it wasn't opened by this run.
+     */
+    public synchronized long length() throws IOException, URISyntaxException {
+        if (writer == null || closed) {
+            return -1;
+        }
 
-        try (CsvBeanWriter csvBeanWriter = new CsvBeanWriter(
-                new BufferedWriter(new FileWriter(destinationPath.toString(), StandardCharsets.UTF_8, true))
-                , CsvPreference.STANDARD_PREFERENCE
-        )) {
-            csvBeanWriter.writeHeader(headers);
+        flushWriter();
+        return Files.size(destinationPath());
+    }
 
-            return destinationPath;
+    /**
+     * Cuts the rows appended after committedLength off an existing file. They belong to pages the previous run
+     * didn't complete, which are exported again when the migration is resumed.
+     */
+    public synchronized void discardAfter(long committedLength) throws IOException, URISyntaxException {
+        var destinationPath = destinationPath();
 
-        } catch (IOException e) {
-            logger.error("Failed to create CSV file to receive mapped attachments " + e.getMessage(), e);
-            throw e;
+        if (committedLength < 0 || writer != null || !Files.exists(destinationPath)
+                || Files.size(destinationPath) <= committedLength) {
+            return;
+        }
+
+        logger.warn("Discarding " + (Files.size(destinationPath) - committedLength)
+                + " bytes of mapped attachments of pages not completed from " + destinationPath);
+
+        try (var channel = FileChannel.open(destinationPath, StandardOpenOption.WRITE)) {
+            channel.truncate(committedLength);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        if (writer != null) {
+            writer.close();
+            logger.info("Closed mapped attachments file " + fileName);
+        }
+    }
+
+    private void flushWriter() throws IOException {
+        writer.flush();
+        lastFlushNanos = System.nanoTime();
+    }
+
+    private Writer openFile(String fileName) throws URISyntaxException, IOException {
+
+        Path destinationPath = destinationPath();
+
+        Writer fileWriter;
+
+        if (appendToExisting && Files.exists(destinationPath)) {
+            logger.info("Appending mapped attachments to existing file at: " + destinationPath);
+            fileWriter = newWriter(destinationPath, StandardOpenOption.APPEND);
+        } else {
+            logger.info("Creating file for mapped attachments at: " + destinationPath);
+            try {
+                fileWriter = newWriter(destinationPath, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.CREATE);
+                writeFields(fileWriter, CSV_HEADER);
+            } catch (IOException e) {
+                logger.error("Failed to create CSV file to receive mapped attachments " + e.getMessage(), e);
+                throw e;
+            }
         }
+
+        lastFlushNanos = System.nanoTime();
+
+        return fileWriter;
+    }
+
+    private Writer newWriter(Path destinationPath, StandardOpenOption... options) throws IOException {
+        var openOptions = new HashSet<>(List.of(options));
+        openOptions.add(StandardOpenOption.WRITE);
+
+        channel = FileChannel.open(destinationPath, openOptions);
+
+        return new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8),
+                BUFFER_SIZE);
+    }
+
+    //columns in the order of CSV_HEADER, written without going through bean reflection
+    static void writeRow(Writer writer, AttachmentAssociationData attachment) throws IOException {
+        writeFields(writer,
+                attachment.getFileName(),
+                attachment.getSize(),
+                attachment.getAttachmentName(),
+                attachment.getProjectId(),
+                attachment.getAuthorKey(),
+                attachment.getTemporary() == null ? null : attachment.getTemporary().toString(),
+                attachment.getCreatedOn(),
+                attachment.getMimeType(),
+                attachment.getTestCaseId(),
+                attachment.getStepId(),
+                attachment.getTestResultId());
+    }
+
+    private static void writeFields(Writer writer, String... fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeField(writer, fields[i]);
+        }
+        writer.write(LINE_SEPARATOR);
+    }
+
+    //quoted only when needed, with inner quotes doubled, as in RFC 4180
+    private static void writeField(Writer writer, String field) throws IOException {
+        if (field == null) {
+            return;
+        }
+
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0) {
+            writer.write(field);
+            return;
+        }
+
+        writer.write('"');
+        writer.write(field.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private Path destinationPath() throws URISyntaxException {
+        return getCurrentPath().resolve(fileName);
     }
 
     private Path getCurrentPath() throws URISyntaxException {
@@ -0,0 +1,90 @@
+package com.atlassian.migration.app.zephyr.migration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The attachment files found under one project key directory, that is the test step and execution directories
+ * and the issue buckets, all of them three levels down. The directory is read in a single walk the first time it
+ * is looked into, so finding an attachment is a set lookup rather than a file system call per candidate path.
+ * <p>
+ * Attachments don't change while they are migrated, so files added after the walk are not seen.
+ */
+class AttachmentsDirectoryIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(AttachmentsDirectoryIndex.class);
+
+    //<key>/teststep/<id>/<file>, <key>/schedule/<id>/<file> and <key>/<bucket>/<issue>/<file>
+    static final int ATTACHMENT_DEPTH = 3;
+
+    private final Path projectDir;
+    private volatile Set<Path> files;
+
+    AttachmentsDirectoryIndex(Path projectDir) {
+        this.projectDir = projectDir;
+    }
+
+    boolean contains(Path file) {
+        return files().contains(file);
+    }
+
+    private Set<Path> files() {
+        if (files == null) {
+            synchronized (this) {
+                if (files == null) {
+                    files = scan();
+                }
+            }
+        }
+        return files;
+    }
+
+    private Set<Path> scan() {
+        Set<Path> scannedFiles = new HashSet<>();
+
+        if (!Files.isDirectory(projectDir)) {
+            return scannedFiles;
+        }
+
+        long startTimeMillis = System.currentTimeMillis();
+        logger.info("Indexing attachments under " + projectDir + "...");
+
+        try {
+            Files.walkFileTree(projectDir, EnumSet.noneOf(FileVisitOption.class), ATTACHMENT_DEPTH,
+                    new SimpleFileVisitor<>() {
+                        @Override
+                        public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                            if (attributes.isRegularFile() && projectDir.relativize(file).getNameCount() == ATTACHMENT_DEPTH) {
+                                scannedFiles.add(file);
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFileFailed(Path file, IOException e) {
+                            logger.debug("Skipping unreadable attachment path " + file + " " + e.getMessage());
+                            return FileVisitResult.CONTINUE;
+                        }
+                    });
+        } catch (IOException e) {
+            logger.error("Failed to index attachments under " + projectDir + " " + e.getMessage(), e);
+            throw new RuntimeException(e);
+        }
+
+        logger.info("Indexed " + scannedFiles.size() + " attachments under " + projectDir + " in "
+                + (System.currentTimeMillis() - startTimeMillis) + "ms.");
+
+        return scannedFiles;
+    }
+}
@@ -2,26 +2,35 @@ package com.atlassian.migration.app.zephyr.migration;
 
 import com.atlassian.migration.app.zephyr.common.ApiException;
 import com.atlassian.migration.app.zephyr.common.ProgressBarUtil;
+import com.atlassian.migration.app.zephyr.common.WorkerPool;
 import com.atlassian.migration.app.zephyr.jira.api.JiraApi;
 import com.atlassian.migration.app.zephyr.migration.model.*;
 import com.atlassian.migration.app.zephyr.scale.api.ScaleApi;
+import com.atlassian.migration.app.zephyr.scale.database.ScaleAttachmentRepository;
 import com.atlassian.migration.app.zephyr.scale.database.ScaleTestCaseRepository;
 import com.atlassian.migration.app.zephyr.scale.model.GetProjectResponse;
 import com.atlassian.migration.app.zephyr.scale.model.ScaleGETStepItemPayload;
 import com.atlassian.migration.app.zephyr.squad.api.SquadApi;
 import com.atlassian.migration.app.zephyr.squad.model.FetchSquadAttachmentResponse;
+import com.atlassian.migration.app.zephyr.squad.model.SquadAttachmentItemResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.dao.DataAccessException;
 
+import javax.sql.DataSource;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -33,22 +42,29 @@ public class AttachmentsMigrator {
     private final ScaleApi scaleApi;
     private final SquadApi squadApi;
 
-    private final DriverManagerDataSource dataSource;
+    private final DataSource dataSource;
+
+    private ScaleTestCaseRepository testCaseRepository;
+
+    private ScaleAttachmentRepository attachmentRepository;
 
     private final AttachmentsCsvExporter attachmentsCsvExporter;
 
     private final AttachmentsCopier attachmentsCopier;
 
-    private final Map<String, GetProjectResponse> projectMetadata = new HashMap<>();
+    private final ExportMode exportMode;
 
-    private static final String[] csvHeader = {"FILE_NAME", "FILE_SIZE", "NAME", "PROJECT_ID", "USER_KEY", "TEMPORARY",
-            "CREATED_ON", "MIME_TYPE", "TEST_CASE_ID", "STEP_ID", "TEST_RESULT_ID"};
+    //when running on virtual threads every attachment lookup is submitted on its own, otherwise null
+    private final WorkerPool workerPool;
 
-    private static final String[] csvMapping = {"FileName", "Size", "AttachmentName", "ProjectId", "AuthorKey", "Temporary",
-            "CreatedOn", "MimeType", "TestCaseId", "StepId", "TestResultId"};
+    private final Map<String, GetProjectResponse> projectMetadata = new ConcurrentHashMap<>();
+
+    //mapped attachments of the page being migrated, per project, until the page is committed
+    private final Map<String, List<AttachmentAssociationData>> pendingAttachments = new ConcurrentHashMap<>();
 
     public AttachmentsMigrator(JiraApi jiraApi, ScaleApi scaleApi, SquadApi squadApi,
-                               DriverManagerDataSource dataSource, AttachmentsCsvExporter attachmentsCsvExporter, AttachmentsCopier attachmentsCopier) {
+                               DataSource dataSource, AttachmentsCsvExporter attachmentsCsvExporter,
+                               AttachmentsCopier attachmentsCopier, WorkerPool workerPool, ExportMode exportMode) {
 
         this.jiraApi = jiraApi;
         this.scaleApi = scaleApi;
@@ -56,27 +72,45 @@ public class AttachmentsMigrator {
         this.attachmentsCsvExporter = attachmentsCsvExporter;
         this.dataSource = dataSource;
         this.attachmentsCopier = attachmentsCopier;
-
+        this.exportMode = exportMode;
+        this.workerPool = workerPool != null && workerPool.executionMode() == WorkerPool.ExecutionMode.VIRTUAL ? workerPool : null;
     }
 
     public void export(SquadToScaleEntitiesMap entitiesMap, String projectKey) throws IOException {
+        export(entitiesMap, projectKey, resolveTestCaseIds(entitiesMap.testCaseMap().values()));
+    }
 
-        var project = projectMetadata.computeIfAbsent(projectKey, key -> {
-            try {
-                return jiraApi.getProjectByKeyWithHistoricalKeys(key);
-            } catch (ApiException e) {
-                throw new RuntimeException(e);
-            }
-        });
+    /**
+     * Same as {@link #export(SquadToScaleEntitiesMap, String)}, with the Scale ids of the test cases already
+     * resolved, so callers exporting a page issue by issue look them up once for the whole page.
+     */
+    public void export(SquadToScaleEntitiesMap entitiesMap, String projectKey, Map<String, Long> scaleTestCaseIds)
+            throws IOException {
+
+        var project = projectMetadata(projectKey);
 
-        CompletableFuture<List<AttachmentAssociationData>> processingTestCases = startTestCaseAsyncProcessing(project.id(),
-                entitiesMap.testCaseMap());
+        CompletableFuture<List<AttachmentAssociationData>> processingTestCases;
+        CompletableFuture<List<AttachmentAssociationData>> processingTestSteps;
+        CompletableFuture<List<AttachmentAssociationData>> processingTestExecutions;
 
-        CompletableFuture<List<AttachmentAssociationData>> processingTestSteps = startTestStepAsyncProcessing(project.id(),
-                entitiesMap.testStepMap());
+        if (workerPool != null) {
+            processingTestCases = submitPerEntity(entitiesMap.testCaseMap().entrySet(),
+                    testCaseMapped -> () -> mapTestCaseAttachments(project.id(), scaleTestCaseIds,
+                            entitiesMap.testCaseAttachmentsMap(), testCaseMapped));
 
-        CompletableFuture<List<AttachmentAssociationData>> processingTestExecutions = startTestExecAsyncProcessing(project.id(),
-                entitiesMap.testExecutionMap());
+            processingTestSteps = submitPerEntity(entitiesMap.testStepMap().entrySet(),
+                    testStepMapped -> () -> mapTestStepAttachments(project.id(), testStepMapped));
+
+            processingTestExecutions = submitPerEntity(entitiesMap.testExecutionMap().entrySet(),
+                    testExecutionMapped -> () -> mapTestExecutionAttachments(project.id(), testExecutionMapped));
+        } else {
+            processingTestCases = startTestCaseAsyncProcessing(project.id(), scaleTestCaseIds,
+                    entitiesMap.testCaseMap(), entitiesMap.testCaseAttachmentsMap());
+
+            processingTestSteps = startTestStepAsyncProcessing(project.id(), entitiesMap.testStepMap());
+
+            processingTestExecutions = startTestExecAsyncProcessing(project.id(), entitiesMap.testExecutionMap());
+        }
 
         CompletableFuture<List<AttachmentAssociationData>> attachmentsMapped = CompletableFuture
                 .allOf(processingTestCases, processingTestSteps, processingTestExecutions)
@@ -89,22 +123,81 @@ public class AttachmentsMigrator {
         try {
             logger.info("Copying attachments to Scale directory");
             attachmentsCopier.copyAttachments(attachmentsMapped.get(), project.key(), project.projectKeys());
-            logger.info("Exporting mapped attachments to csv");
-            attachmentsCsvExporter.dump(attachmentsMapped.get(), csvHeader, csvMapping);
-            logger.info("Exporting attachments to csv finished");
-        } catch (InterruptedException | ExecutionException | IOException | URISyntaxException e) {
+            pendingAttachments.computeIfAbsent(projectKey, key -> Collections.synchronizedList(new ArrayList<>()))
+                    .addAll(attachmentsMapped.get());
+        } catch (InterruptedException | ExecutionException | IOException e) {
             logger.error("Failed to migrate attachments " + e.getMessage(), e);
             throw new RuntimeException(e);
         }
     }
 
+    //the Scale ids of the given test case keys, in one query per chunk instead of one per test case
+    public Map<String, Long> resolveTestCaseIds(Collection<String> scaleTestCaseKeys) {
+        return scaleTestCaseKeys.isEmpty() ? Map.of() : testCaseRepository().getByKeys(scaleTestCaseKeys);
+    }
+
+    /**
+     * Exports the attachments mapped since the project's last completed page, right before the page is recorded
+     * as migrated. A page that fails before then leaves nothing behind, so resuming it doesn't export its
+     * attachments twice.
+     *
+     * @return the length of the CSV file with the page's rows written to it, -1 when there is none
+     */
+    public long commitPage(String projectKey) {
+        var attachmentsMapped = pendingAttachments.remove(projectKey);
+
+        if (attachmentsMapped == null) {
+            attachmentsMapped = List.of();
+        }
+
+        try {
+            if (exportMode.writesCsv() && !attachmentsMapped.isEmpty()) {
+                logger.info("Exporting mapped attachments to csv");
+                attachmentsCsvExporter.dump(attachmentsMapped);
+                //the rows must be on disk before the journal records the page, or a crash would lose them
+                attachmentsCsvExporter.flush();
+                logger.info("Exporting attachments to csv finished");
+            }
+            if (exportMode.writesDatabase() && !attachmentsMapped.isEmpty()) {
+                logger.info("Inserting mapped attachments into Scale database");
+                attachmentRepository().insertAll(attachmentsMapped);
+                logger.info("Inserting attachments into Scale database finished");
+            }
+            return exportMode.writesCsv() ? attachmentsCsvExporter.length() : -1;
+        } catch (IOException | URISyntaxException | DataAccessException e) {
+            logger.error("Failed to export mapped attachments " + e.getMessage(), e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    //drops what was kept about the project once it is migrated, the attachment directory indexes above all
+    public void releaseProject(String projectKey) {
+        projectMetadata.remove(projectKey);
+        pendingAttachments.remove(projectKey);
+        attachmentsCopier.releaseProject(projectKey);
+    }
+
+    //fetched outside of computeIfAbsent, so a slow Jira call doesn't block the map for the other projects
+    private GetProjectResponse projectMetadata(String projectKey) throws ApiException {
+        var project = projectMetadata.get(projectKey);
+
+        if (project == null) {
+            project = jiraApi.getProjectByKeyWithHistoricalKeys(projectKey);
+            var cached = projectMetadata.putIfAbsent(projectKey, project);
+            project = cached != null ? cached : project;
+        }
+        return project;
+    }
+
     private CompletableFuture<List<AttachmentAssociationData>> startTestCaseAsyncProcessing(String projectId,
-                                                                                            SquadToScaleTestCaseMap testCaseMap) {
+                                                                                            Map<String, Long> scaleTestCaseIds,
+                                                                                            SquadToScaleTestCaseMap testCaseMap,
+                                                                                            SquadTestCaseAttachmentsMap testCaseAttachmentsMap) {
         logger.info("Starting to process Test Cases attachments asynchronously");
         return CompletableFuture
                 .supplyAsync(() -> {
                     try {
-                        return processTestCases(projectId, testCaseMap);
+                        return processTestCases(projectId, scaleTestCaseIds, testCaseMap, testCaseAttachmentsMap);
                     } catch (IOException e) {
                         logger.error("Failed to map Test Cases Attachments " + e.getMessage(), e);
                         throw new RuntimeException(e);
@@ -142,11 +235,26 @@ public class AttachmentsMigrator {
                 });
     }
 
-    private List<AttachmentAssociationData> processTestCases(String projectId, SquadToScaleTestCaseMap testCaseMap) throws IOException {
+    private synchronized ScaleTestCaseRepository testCaseRepository() {
+        //created on first use, so the database dialect is only resolved once a lookup is needed
+        if (testCaseRepository == null) {
+            testCaseRepository = new ScaleTestCaseRepository(dataSource);
+        }
+        return testCaseRepository;
+    }
 
-        List<AttachmentAssociationData> attachmentsMapped = new ArrayList<>();
+    private synchronized ScaleAttachmentRepository attachmentRepository() {
+        if (attachmentRepository == null) {
+            attachmentRepository = new ScaleAttachmentRepository(dataSource);
+        }
+        return attachmentRepository;
+    }
+
+    private List<AttachmentAssociationData> processTestCases(String projectId, Map<String, Long> scaleTestCaseIds,
+                                                             SquadToScaleTestCaseMap testCaseMap,
+                                                             SquadTestCaseAttachmentsMap testCaseAttachmentsMap) throws IOException {
 
-        ScaleTestCaseRepository testCaseRepository = new ScaleTestCaseRepository(dataSource);
+        List<AttachmentAssociationData> attachmentsMapped = new ArrayList<>();
 
         var startTimeMillis = System.currentTimeMillis();
         var testCaseIndex = 0;
@@ -159,28 +267,8 @@ public class AttachmentsMigrator {
                         + ProgressBarUtil.getProgressBar(testCaseIndex++, testCaseEntrySet.size(), startTimeMillis));
             }
 
-            var scaleTestCaseKey = testCaseMapped.getValue();
-            var squadTestCase = testCaseMapped.getKey();
-
-            var scaleTestCaseEntity = testCaseRepository.getByKey(scaleTestCaseKey);
-
-            if (scaleTestCaseEntity.isEmpty()) {
-                logger.error("Couldn't find the Scale Test Case needed for attachment mapping");
-                throw new IOException();
-            }
-
-            var issueAttachments = jiraApi.getIssueAttachmentsByIssueId(squadTestCase.testCaseId());
-
-            attachmentsMapped.addAll(issueAttachments.stream().map(
-                    attachment -> AttachmentAssociationData.createAttachmentAssociationDataFromTestCase(
-                            attachment.filename(),
-                            attachment.id(),
-                            null,
-                            attachment.size(),
-                            attachment.author().key(),
-                            projectId,
-                            String.valueOf(scaleTestCaseEntity.get().id()),
-                            new SquadOriginEntity(testCaseMapped.getKey().testCaseId(), testCaseMapped.getKey().testCaseKey()))).toList());
+            attachmentsMapped.addAll(mapTestCaseAttachments(projectId, scaleTestCaseIds, testCaseAttachmentsMap,
+                    testCaseMapped));
         }
 
         logger.info("Test case attachment progress: "
@@ -189,6 +277,39 @@ public class AttachmentsMigrator {
         return attachmentsMapped;
     }
 
+    private List<AttachmentAssociationData> mapTestCaseAttachments(
+            String projectId, Map<String, Long> scaleTestCaseIds,
+            SquadTestCaseAttachmentsMap testCaseAttachmentsMap,
+            Map.Entry<SquadToScaleTestCaseMap.TestCaseMapKey, String> testCaseMapped) throws IOException {
+
+        var scaleTestCaseKey = testCaseMapped.getValue();
+        var squadTestCase = testCaseMapped.getKey();
+
+        var scaleTestCaseId = scaleTestCaseIds.get(scaleTestCaseKey);
+
+        if (scaleTestCaseId == null) {
+            logger.error("Couldn't find the Scale Test Case needed for attachment mapping");
+            throw new IOException();
+        }
+
+        //attachments come with the search page, the issue is only fetched again if they weren't part of it
+        var issueAttachments = testCaseAttachmentsMap.get(squadTestCase.testCaseId());
+        if (issueAttachments == null) {
+            issueAttachments = jiraApi.getIssueAttachmentsByIssueId(squadTestCase.testCaseId());
+        }
+
+        return issueAttachments.stream().map(
+                attachment -> AttachmentAssociationData.createAttachmentAssociationDataFromTestCase(
+                        attachment.filename(),
+                        attachment.id(),
+                        null,
+                        attachment.size(),
+                        attachment.author().key(),
+                        projectId,
+                        String.valueOf(scaleTestCaseId),
+                        new SquadOriginEntity(testCaseMapped.getKey().testCaseId(), testCaseMapped.getKey().testCaseKey()))).toList();
+    }
+
     private List<AttachmentAssociationData> processTestSteps(String projectId,
                                                              SquadToScaleTestStepMap testStepMap) throws IOException {
 
@@ -205,30 +326,41 @@ public class AttachmentsMigrator {
                         + ProgressBarUtil.getProgressBar(testStepIndex++, testStepEntrySet.size(), startTimeMillis));
             }
 
-            var stepsFromScale = scaleApi.fetchTestStepsFromTestCaseKey(testStepMapped.getKey());
+            attachmentsMapped.addAll(mapTestStepAttachments(projectId, testStepMapped));
+        }
 
-            Map<Integer, String> scaleStepData = stepsFromScale.testScript().steps.stream().collect(Collectors.toMap(
-                    step -> Integer.valueOf(step.index()), ScaleGETStepItemPayload::id));
+        logger.info("Test Steps attachments processing finished");
+        return attachmentsMapped;
 
-            for (var attachmentsPerOrder : testStepMapped.getValue().entrySet()) {
+    }
 
-                attachmentsMapped.addAll(attachmentsPerOrder.getValue().stream().map(
-                        attachment -> AttachmentAssociationData.createAttachmentAssociationDataFromTestStep(
-                                attachment.fileName(),
-                                attachment.fileId(),
-                                null,
-                                attachment.fileSize(),
-                                attachment.author(),
-                                projectId,
-                                scaleStepData.get(Integer.parseInt(attachmentsPerOrder.getKey().stepOrder()) - 1),
-                                new SquadOriginEntity(attachmentsPerOrder.getKey().stepId(), ""))).toList());
+    private List<AttachmentAssociationData> mapTestStepAttachments(
+            String projectId,
+            Map.Entry<String, Map<SquadToScaleTestStepMap.TestStepMapKey, List<SquadAttachmentItemResponse>>> testStepMapped)
+            throws IOException {
 
-            }
-        }
+        List<AttachmentAssociationData> attachmentsMapped = new ArrayList<>();
 
-        logger.info("Test Steps attachments processing finished");
-        return attachmentsMapped;
+        var stepsFromScale = scaleApi.fetchTestStepsFromTestCaseKey(testStepMapped.getKey());
+
+        Map<Integer, String> scaleStepData = stepsFromScale.testScript().steps.stream().collect(Collectors.toMap(
+                step -> Integer.valueOf(step.index()), ScaleGETStepItemPayload::id));
+
+        for (var attachmentsPerOrder : testStepMapped.getValue().entrySet()) {
 
+            attachmentsMapped.addAll(attachmentsPerOrder.getValue().stream().map(
+                    attachment -> AttachmentAssociationData.createAttachmentAssociationDataFromTestStep(
+                            attachment.fileName(),
+                            attachment.fileId(),
+                            null,
+                            attachment.fileSize(),
+                            attachment.author(),
+                            projectId,
+                            scaleStepData.get(Integer.parseInt(attachmentsPerOrder.getKey().stepOrder()) - 1),
+                            new SquadOriginEntity(attachmentsPerOrder.getKey().stepId(), ""))).toList());
+
+        }
+        return attachmentsMapped;
     }
 
     private List<AttachmentAssociationData> processTestExecutions(String projectId,
@@ -247,23 +379,79 @@ public class AttachmentsMigrator {
                         + ProgressBarUtil.getProgressBar(testExecutionIndex++, testExecutionEntrySet.size(), startTimeMillis));
             }
 
-            FetchSquadAttachmentResponse testExecAttachments = squadApi.fetchTestExecutionAttachmentById(testExecutionMapped.getKey().testExecutionId());
-
-
-            attachmentsMapped.addAll(testExecAttachments.data().stream().map(
-                    attachment -> AttachmentAssociationData.createAttachmentAssociationDataFromTestExecution(
-                            attachment.fileName(),
-                            attachment.fileId(),
-                            null,
-                            attachment.fileSize(),
-                            attachment.author(),
-                            projectId,
-                            testExecutionMapped.getValue(),
-                            new SquadOriginEntity(testExecutionMapped.getKey().testExecutionId(), ""))).toList());
+            attachmentsMapped.addAll(mapTestExecutionAttachments(projectId, testExecutionMapped));
         }
 
         logger.info("Test Executions attachments processing finished");
         return attachmentsMapped;
 
     }
+
+    private List<AttachmentAssociationData> mapTestExecutionAttachments(
+            String projectId,
+            Map.Entry<SquadToScaleTestExecutionMap.TestExecutionMapKey, String> testExecutionMapped) throws IOException {
+
+        FetchSquadAttachmentResponse testExecAttachments = squadApi.fetchTestExecutionAttachmentById(testExecutionMapped.getKey().testExecutionId());
+
+        return testExecAttachments.data().stream().map(
+                attachment -> AttachmentAssociationData.createAttachmentAssociationDataFromTestExecution(
+                        attachment.fileName(),
+                        attachment.fileId(),
+                        null,
+                        attachment.fileSize(),
+                        attachment.author(),
+                        projectId,
+                        testExecutionMapped.getValue(),
+                        new SquadOriginEntity(testExecutionMapped.getKey().testExecutionId(), ""))).toList();
+    }
+
+    private <E> CompletableFuture<List<AttachmentAssociationData>> submitPerEntity(
+            Collection<E> entities, Function<E, Callable<List<AttachmentAssociationData>>> mapping) {
+
+        List<CompletableFuture<List<AttachmentAssociationData>>> pendingMappings = entities.stream()
+                .map(entity -> workerPool.submit(mapping.apply(entity)))
+                .toList();
+
+        return CompletableFuture.allOf(pendingMappings.toArray(CompletableFuture[]::new))
+                .thenApply(unused -> pendingMappings.stream()
+                        .flatMap(pendingMapping -> pendingMapping.join().stream())
+                        .toList());
+    }
+
+    /**
+     * Where the mapped attachments go: the CSV file to be imported by hand, the Scale attachment table directly, or
+     * both.
+     */
+    public enum ExportMode {
+        CSV("csv"),
+        DATABASE("database"),
+        BOTH("both");
+
+        private final String modeName;
+
+        ExportMode(String modeName) {
+            this.modeName = modeName;
+        }
+
+        public boolean writesCsv() {
+            return this != DATABASE;
+        }
+
+        public boolean writesDatabase() {
+            return this != CSV;
+        }
+
+        public static ExportMode getExportModeByName(String name) {
+            return Arrays.stream(values())
+                    .filter(mode -> mode.modeName.equalsIgnoreCase(name))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unsupported attachments export: " + name
+                            + ", Supported values: " + Arrays.toString(values())));
+        }
+
+        @Override
+        public String toString() {
+            return modeName;
+        }
+    }
 }
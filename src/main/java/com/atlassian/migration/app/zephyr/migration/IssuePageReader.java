@@ -0,0 +1,171 @@
+package com.atlassian.migration.app.zephyr.migration;
+
+import com.atlassian.migration.app.zephyr.jira.model.JiraIssuesResponse;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Reads the issues of a project page by page, fetching up to prefetchDepth pages ahead in the background while
+ * the current one is migrated. Pages are fetched one after the other on a single thread, so at most
+ * prefetchDepth pages are held in memory besides the one being processed.
+ * <p>
+ * In keyset mode every page starts right after the last issue id of the previous one, so a page is only fetched
+ * once the previous one arrived, and reading stops early on the first empty page.
+ */
+public class IssuePageReader implements Iterator<IssuePageReader.Page>, Closeable {
+
+    private final PageFetcher fetcher;
+    private final PaginationMode paginationMode;
+    private final int total;
+    private final int pageSize;
+    private final int prefetchDepth;
+
+    private final Deque<PendingPage> pendingPages = new ArrayDeque<>();
+    private final ExecutorService prefetchExecutor;
+    private final Executor fetchExecutor;
+
+    private int nextStartAt;
+    private CompletableFuture<String> nextAfterIssueId;
+    private boolean exhausted = false;
+
+    public IssuePageReader(PageFetcher fetcher, int startAt, int total, int pageSize, int prefetchDepth) {
+        this(fetcher, PaginationMode.OFFSET, startAt, null, total, pageSize, prefetchDepth);
+    }
+
+    public IssuePageReader(PageFetcher fetcher, PaginationMode paginationMode, int startAt, String afterIssueId,
+                           int total, int pageSize, int prefetchDepth) {
+        this.fetcher = fetcher;
+        this.paginationMode = paginationMode;
+        this.nextStartAt = startAt;
+        this.nextAfterIssueId = CompletableFuture.completedFuture(afterIssueId);
+        this.total = total;
+        this.pageSize = pageSize;
+        this.prefetchDepth = Math.max(0, prefetchDepth);
+        this.prefetchExecutor = this.prefetchDepth > 0 ? Executors.newSingleThreadExecutor(runnable -> {
+            var thread = new Thread(runnable, "jira-page-prefetch");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        //without prefetching, pages are fetched on the calling thread when asked for
+        this.fetchExecutor = prefetchExecutor != null ? prefetchExecutor : Runnable::run;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !exhausted && (!pendingPages.isEmpty() || nextStartAt < total);
+    }
+
+    @Override
+    public Page next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more issues to read");
+        }
+
+        //the page handed back is taken off the queue, leaving the next prefetchDepth pages in flight
+        schedulePages(prefetchDepth + 1);
+        var current = pendingPages.poll();
+        schedulePages(prefetchDepth);
+
+        try {
+            var issues = current.issues().join();
+
+            if (paginationMode == PaginationMode.KEYSET && issues.isEmpty()) {
+                exhausted = true;
+                close();
+            }
+
+            return new Page(current.startAt(), current.lastIssueId().join(), issues);
+        } catch (CompletionException exception) {
+            if (exception.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw exception;
+        }
+    }
+
+    @Override
+    public void close() {
+        pendingPages.forEach(pendingPage -> pendingPage.issues().cancel(true));
+        pendingPages.clear();
+
+        if (prefetchExecutor != null) {
+            prefetchExecutor.shutdownNow();
+        }
+    }
+
+    private void schedulePages(int maxPendingPages) {
+        while (pendingPages.size() < maxPendingPages && nextStartAt < total) {
+            var startAt = nextStartAt;
+            var afterIssueId = nextAfterIssueId;
+
+            var issues = afterIssueId.thenApplyAsync(lastIssueId -> fetch(startAt, lastIssueId), fetchExecutor);
+            var lastIssueId = afterIssueId.thenCombine(issues, (previousLastIssueId, pageIssues) ->
+                    pageIssues.isEmpty() ? previousLastIssueId : pageIssues.get(pageIssues.size() - 1).id());
+
+            pendingPages.add(new PendingPage(startAt, issues, lastIssueId));
+
+            nextStartAt += pageSize;
+            nextAfterIssueId = lastIssueId;
+        }
+    }
+
+    private List<JiraIssuesResponse> fetch(int startAt, String afterIssueId) {
+        try {
+            return fetcher.fetch(startAt, afterIssueId);
+        } catch (IOException exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    /**
+     * Fetches one page, either at the startAt offset or right after afterIssueId, which is null for the
+     * first page.
+     */
+    @FunctionalInterface
+    public interface PageFetcher {
+        List<JiraIssuesResponse> fetch(int startAt, String afterIssueId) throws IOException;
+    }
+
+    public record Page(int startAt, String lastIssueId, List<JiraIssuesResponse> issues) {
+    }
+
+    private record PendingPage(int startAt, CompletableFuture<List<JiraIssuesResponse>> issues,
+                               CompletableFuture<String> lastIssueId) {
+    }
+
+    public enum PaginationMode {
+        OFFSET("offset"),
+        KEYSET("keyset");
+
+        private final String modeName;
+
+        PaginationMode(String modeName) {
+            this.modeName = modeName;
+        }
+
+        public static PaginationMode getPaginationModeByName(String name) {
+            return Arrays.stream(values())
+                    .filter(mode -> mode.modeName.equalsIgnoreCase(name))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unsupported pagination mode: " + name
+                            + ", Supported values: " + Arrays.toString(values())));
+        }
+
+        @Override
+        public String toString() {
+            return modeName;
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package com.atlassian.migration.app.zephyr.migration;
 
 import com.atlassian.migration.app.zephyr.common.ApiConfiguration;
+import com.atlassian.migration.app.zephyr.common.DataSourcePoolConfiguration;
+import com.atlassian.migration.app.zephyr.common.WorkerPool;
+import com.atlassian.migration.app.zephyr.migration.service.SquadExecutionService;
+import com.atlassian.migration.app.zephyr.migration.service.WikiMarkupRenderer;
 
 public record MigrationConfiguration(
         ApiConfiguration apiConfiguration,
@@ -8,5 +12,201 @@ public record MigrationConfiguration(
         String cycleNamePlaceHolder,
         String attachmentsMappedCsvFile,
         String databaseType,
-        String attachmentsBaseFolder) {
+        String attachmentsBaseFolder,
+        int testCaseCreationThreads,
+        WorkerPool.ExecutionMode executionMode,
+        int maxInFlightTasks,
+        int testResultsBatchSize,
+        String journalFile,
+        int pagePrefetchDepth,
+        IssuePageReader.PaginationMode paginationMode,
+        WikiMarkupRenderer.RendererMode wikiRenderer,
+        DataSourcePoolConfiguration databasePool,
+        SquadToScaleMigrator.PageProcessingMode pageProcessingMode,
+        int projectConcurrency,
+        int searchPageSize,
+        SquadExecutionService.ExtractionMode executionExtraction,
+        int attachmentCopyThreads,
+        AttachmentsCopier.TransferMode attachmentTransfer,
+        AttachmentsMigrator.ExportMode attachmentsExport) {
+
+    public static final int DEFAULT_TEST_CASE_CREATION_THREADS = 1;
+    public static final WorkerPool.ExecutionMode DEFAULT_EXECUTION_MODE = WorkerPool.ExecutionMode.PLATFORM;
+    public static final int DEFAULT_MAX_IN_FLIGHT_TASKS = 64;
+    public static final int DEFAULT_TEST_RESULTS_BATCH_SIZE = 50;
+    public static final String DEFAULT_JOURNAL_FILE = "migration.journal";
+    public static final int DEFAULT_PAGE_PREFETCH_DEPTH = 1;
+    public static final IssuePageReader.PaginationMode DEFAULT_PAGINATION_MODE = IssuePageReader.PaginationMode.OFFSET;
+    public static final WikiMarkupRenderer.RendererMode DEFAULT_WIKI_RENDERER = WikiMarkupRenderer.RendererMode.REMOTE;
+    public static final SquadToScaleMigrator.PageProcessingMode DEFAULT_PAGE_PROCESSING_MODE =
+            SquadToScaleMigrator.PageProcessingMode.PHASED;
+    public static final int DEFAULT_PROJECT_CONCURRENCY = 1;
+    //no larger search pages than the batches, each batch is fetched on its own
+    public static final int DEFAULT_SEARCH_PAGE_SIZE = 0;
+    public static final SquadExecutionService.ExtractionMode DEFAULT_EXECUTION_EXTRACTION =
+            SquadExecutionService.ExtractionMode.PER_ISSUE;
+    public static final int DEFAULT_ATTACHMENT_COPY_THREADS = AttachmentsCopier.DEFAULT_COPY_THREADS;
+    public static final AttachmentsCopier.TransferMode DEFAULT_ATTACHMENT_TRANSFER =
+            AttachmentsCopier.DEFAULT_TRANSFER_MODE;
+    public static final AttachmentsMigrator.ExportMode DEFAULT_ATTACHMENTS_EXPORT = AttachmentsMigrator.ExportMode.CSV;
+
+    /**
+     * Starts a configuration from the settings every migration needs, the optional ones keep their DEFAULT_ value
+     * unless set on the builder.
+     */
+    public static Builder builder(ApiConfiguration apiConfiguration,
+                                  int pageSteps,
+                                  String cycleNamePlaceHolder,
+                                  String attachmentsMappedCsvFile,
+                                  String databaseType,
+                                  String attachmentsBaseFolder) {
+        return new Builder(apiConfiguration, pageSteps, cycleNamePlaceHolder, attachmentsMappedCsvFile, databaseType,
+                attachmentsBaseFolder);
+    }
+
+    public boolean runsOnVirtualThreads() {
+        return executionMode == WorkerPool.ExecutionMode.VIRTUAL;
+    }
+
+    public boolean runsPipelined() {
+        return pageProcessingMode == SquadToScaleMigrator.PageProcessingMode.PIPELINED;
+    }
+
+    public boolean extractsExecutionsInBulk() {
+        return executionExtraction == SquadExecutionService.ExtractionMode.BULK;
+    }
+
+    public boolean streamsSearchPages() {
+        return searchPageSize > pageSteps;
+    }
+
+    public static final class Builder {
+
+        private final ApiConfiguration apiConfiguration;
+        private final int pageSteps;
+        private final String cycleNamePlaceHolder;
+        private final String attachmentsMappedCsvFile;
+        private final String databaseType;
+        private final String attachmentsBaseFolder;
+
+        private int testCaseCreationThreads = DEFAULT_TEST_CASE_CREATION_THREADS;
+        private WorkerPool.ExecutionMode executionMode = DEFAULT_EXECUTION_MODE;
+        private int maxInFlightTasks = DEFAULT_MAX_IN_FLIGHT_TASKS;
+        private int testResultsBatchSize = DEFAULT_TEST_RESULTS_BATCH_SIZE;
+        private String journalFile = DEFAULT_JOURNAL_FILE;
+        private int pagePrefetchDepth = DEFAULT_PAGE_PREFETCH_DEPTH;
+        private IssuePageReader.PaginationMode paginationMode = DEFAULT_PAGINATION_MODE;
+        private WikiMarkupRenderer.RendererMode wikiRenderer = DEFAULT_WIKI_RENDERER;
+        private DataSourcePoolConfiguration databasePool = DataSourcePoolConfiguration.disabled();
+        private SquadToScaleMigrator.PageProcessingMode pageProcessingMode = DEFAULT_PAGE_PROCESSING_MODE;
+        private int projectConcurrency = DEFAULT_PROJECT_CONCURRENCY;
+        private int searchPageSize = DEFAULT_SEARCH_PAGE_SIZE;
+        private SquadExecutionService.ExtractionMode executionExtraction = DEFAULT_EXECUTION_EXTRACTION;
+        private int attachmentCopyThreads = DEFAULT_ATTACHMENT_COPY_THREADS;
+        private AttachmentsCopier.TransferMode attachmentTransfer = DEFAULT_ATTACHMENT_TRANSFER;
+        private AttachmentsMigrator.ExportMode attachmentsExport = DEFAULT_ATTACHMENTS_EXPORT;
+
+        private Builder(ApiConfiguration apiConfiguration,
+                        int pageSteps,
+                        String cycleNamePlaceHolder,
+                        String attachmentsMappedCsvFile,
+                        String databaseType,
+                        String attachmentsBaseFolder) {
+            this.apiConfiguration = apiConfiguration;
+            this.pageSteps = pageSteps;
+            this.cycleNamePlaceHolder = cycleNamePlaceHolder;
+            this.attachmentsMappedCsvFile = attachmentsMappedCsvFile;
+            this.databaseType = databaseType;
+            this.attachmentsBaseFolder = attachmentsBaseFolder;
+        }
+
+        public Builder testCaseCreationThreads(int testCaseCreationThreads) {
+            this.testCaseCreationThreads = testCaseCreationThreads;
+            return this;
+        }
+
+        public Builder executionMode(WorkerPool.ExecutionMode executionMode) {
+            this.executionMode = executionMode;
+            return this;
+        }
+
+        public Builder maxInFlightTasks(int maxInFlightTasks) {
+            this.maxInFlightTasks = maxInFlightTasks;
+            return this;
+        }
+
+        public Builder testResultsBatchSize(int testResultsBatchSize) {
+            this.testResultsBatchSize = testResultsBatchSize;
+            return this;
+        }
+
+        public Builder journalFile(String journalFile) {
+            this.journalFile = journalFile;
+            return this;
+        }
+
+        public Builder pagePrefetchDepth(int pagePrefetchDepth) {
+            this.pagePrefetchDepth = pagePrefetchDepth;
+            return this;
+        }
+
+        public Builder paginationMode(IssuePageReader.PaginationMode paginationMode) {
+            this.paginationMode = paginationMode;
+            return this;
+        }
+
+        public Builder wikiRenderer(WikiMarkupRenderer.RendererMode wikiRenderer) {
+            this.wikiRenderer = wikiRenderer;
+            return this;
+        }
+
+        public Builder databasePool(DataSourcePoolConfiguration databasePool) {
+            this.databasePool = databasePool;
+            return this;
+        }
+
+        public Builder pageProcessingMode(SquadToScaleMigrator.PageProcessingMode pageProcessingMode) {
+            this.pageProcessingMode = pageProcessingMode;
+            return this;
+        }
+
+        public Builder projectConcurrency(int projectConcurrency) {
+            this.projectConcurrency = projectConcurrency;
+            return this;
+        }
+
+        public Builder searchPageSize(int searchPageSize) {
+            this.searchPageSize = searchPageSize;
+            return this;
+        }
+
+        public Builder executionExtraction(SquadExecutionService.ExtractionMode executionExtraction) {
+            this.executionExtraction = executionExtraction;
+            return this;
+        }
+
+        public Builder attachmentCopyThreads(int attachmentCopyThreads) {
+            this.attachmentCopyThreads = attachmentCopyThreads;
+            return this;
+        }
+
+        public Builder attachmentTransfer(AttachmentsCopier.TransferMode attachmentTransfer) {
+            this.attachmentTransfer = attachmentTransfer;
+            return this;
+        }
+
+        public Builder attachmentsExport(AttachmentsMigrator.ExportMode attachmentsExport) {
+            this.attachmentsExport = attachmentsExport;
+            return this;
+        }
+
+        public MigrationConfiguration build() {
+            return new MigrationConfiguration(apiConfiguration, pageSteps, cycleNamePlaceHolder,
+                    attachmentsMappedCsvFile, databaseType, attachmentsBaseFolder, testCaseCreationThreads,
+                    executionMode, maxInFlightTasks, testResultsBatchSize, journalFile, pagePrefetchDepth,
+                    paginationMode, wikiRenderer, databasePool, pageProcessingMode, projectConcurrency,
+                    searchPageSize, executionExtraction, attachmentCopyThreads, attachmentTransfer,
+                    attachmentsExport);
+        }
+    }
 }
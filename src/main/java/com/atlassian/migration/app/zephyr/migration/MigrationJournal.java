@@ -0,0 +1,453 @@
+package com.atlassian.migration.app.zephyr.migration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only record of what has already been migrated, so a failed run can be resumed instead of started over.
+ * <p>
+ * Every Squad to Scale mapping is appended as one line as soon as it is created. Lines reach the OS right away,
+ * while the costly fsync is only paid once per committed page. On resume the file is replayed and the migrator asks
+ * it which issues, steps, executions and pages can be skipped.
+ * <p>
+ * Pages are migrated in order, so only the mappings of a project's unfinished page are ever looked up again. Those
+ * are the only ones kept in memory, and only when resuming: the mappings of completed pages are dropped while
+ * replaying, and the replayed ones once the page is completed again.
+ */
+public class MigrationJournal implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MigrationJournal.class);
+
+    private static final String SEPARATOR = "\t";
+
+    //project scope of a run migrating every project the user can see
+    public static final String ALL_PROJECTS = "*";
+
+    private static final String RUN_RECORD = "RUN";
+
+    private static final String PROJECT_SETUP_RECORD = "SETUP";
+    private static final String TEST_CASE_RECORD = "TC";
+    private static final String TEST_STEPS_RECORD = "STEPS";
+    private static final String TEST_EXECUTION_RECORD = "EXEC";
+    private static final String CYCLE_RECORD = "CYCLE";
+    private static final String PAGE_RECORD = "PAGE";
+    private static final String PROJECT_DONE_RECORD = "DONE";
+
+    private final FileChannel channel;
+    private final Writer writer;
+
+    private final Set<String> projectsSetUp = ConcurrentHashMap.newKeySet();
+    private final Set<String> projectsDone = ConcurrentHashMap.newKeySet();
+    private final Map<String, Integer> nextPageStartByProject = new ConcurrentHashMap<>();
+    private final Map<String, String> lastIssueIdByProject = new ConcurrentHashMap<>();
+    private final Map<String, PageRecords> unfinishedPageByProject = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, String>> cycleKeysByProject = new ConcurrentHashMap<>();
+    //length of the attachments CSV when the last page was completed, -1 when never recorded
+    private volatile long attachmentsCsvLength = -1;
+    //settings of the run that wrote the journal, null until recorded
+    private volatile RunSettings journaledRun;
+
+    private MigrationJournal(FileChannel channel) {
+        this.channel = channel;
+        this.writer = channel == null ? null : Channels.newWriter(channel, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Journal that keeps nothing, used when the migration is not meant to be resumed.
+     */
+    public static MigrationJournal disabled() {
+        return new MigrationJournal(null);
+    }
+
+    /**
+     * Opens the journal at the given path. When resuming, the existing records are replayed and new ones are
+     * appended after them, otherwise any previous journal is discarded.
+     */
+    public static MigrationJournal open(Path path, boolean resume) throws IOException {
+        if (!resume) {
+            Files.deleteIfExists(path);
+        } else if (Files.exists(path)) {
+            truncateTornRecord(path);
+        }
+
+        var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+
+        var journal = new MigrationJournal(channel);
+
+        if (resume) {
+            journal.replay(path);
+        }
+
+        return journal;
+    }
+
+    /**
+     * Records the settings the page records depend on, or checks them against the ones journaled by the run being
+     * resumed: pages were numbered for those projects with that pagination, and mean nothing to another run.
+     */
+    public void runStarted(String projects, String paginationMode) {
+        if (isDisabled()) {
+            return;
+        }
+
+        var currentRun = new RunSettings(projects, paginationMode);
+
+        if (journaledRun == null) {
+            journaledRun = currentRun;
+            append(RUN_RECORD, projects, paginationMode);
+            sync();
+        } else if (!journaledRun.equals(currentRun)) {
+            throw new IllegalStateException("The migration journal was written for projects " + journaledRun.projects()
+                    + " with " + journaledRun.paginationMode() + " pagination, which can't be resumed for projects "
+                    + projects + " with " + paginationMode + " pagination. Start the migration without "
+                    + "--resume or with the same settings.");
+        }
+    }
+
+    public boolean isProjectSetUp(String projectKey) {
+        return projectsSetUp.contains(projectKey);
+    }
+
+    public boolean isProjectDone(String projectKey) {
+        return projectsDone.contains(projectKey);
+    }
+
+    public int nextPageStart(String projectKey) {
+        return nextPageStartByProject.getOrDefault(projectKey, 0);
+    }
+
+    //id of the last issue of the last completed page, where keyset pagination resumes from
+    public String lastIssueId(String projectKey) {
+        return lastIssueIdByProject.get(projectKey);
+    }
+
+    public String testCaseKey(String projectKey, String squadIssueId) {
+        var records = unfinishedPageByProject.get(projectKey);
+        return records == null ? null : records.testCaseKeyByIssueId().get(squadIssueId);
+    }
+
+    public boolean areStepsUpdated(String projectKey, String squadIssueId) {
+        var records = unfinishedPageByProject.get(projectKey);
+        return records != null && records.issuesWithStepsUpdated().contains(squadIssueId);
+    }
+
+    public String testResultId(String projectKey, String squadExecutionId) {
+        var records = unfinishedPageByProject.get(projectKey);
+        return records == null ? null : records.testResultIdByExecutionId().get(squadExecutionId);
+    }
+
+    /**
+     * Length the attachments CSV had when the last page was completed, rows past it belong to unfinished pages.
+     */
+    public long attachmentsCsvLength() {
+        return attachmentsCsvLength;
+    }
+
+    public Map<String, String> cycleKeys(String projectKey) {
+        return Map.copyOf(cycleKeysByProject.getOrDefault(projectKey, Map.of()));
+    }
+
+    public void projectSetUp(String projectKey) {
+        if (isDisabled()) {
+            return;
+        }
+
+        if (projectsSetUp.add(projectKey)) {
+            append(PROJECT_SETUP_RECORD, projectKey);
+        }
+    }
+
+    //entities are only recorded, never kept, since a run doesn't go back to the pages it migrated itself
+    public void testCaseCreated(String projectKey, String squadIssueId, String scaleTestCaseKey) {
+        if (isDisabled() || scaleTestCaseKey == null) {
+            return;
+        }
+
+        append(TEST_CASE_RECORD, projectKey, squadIssueId, scaleTestCaseKey);
+    }
+
+    public void stepsUpdated(String projectKey, String squadIssueId) {
+        if (isDisabled()) {
+            return;
+        }
+
+        append(TEST_STEPS_RECORD, projectKey, squadIssueId);
+    }
+
+    public void testResultCreated(String projectKey, String squadExecutionId, String scaleTestResultId) {
+        if (isDisabled() || scaleTestResultId == null) {
+            return;
+        }
+
+        append(TEST_EXECUTION_RECORD, projectKey, squadExecutionId, scaleTestResultId);
+    }
+
+    public void cycleCreated(String projectKey, String squadCycleName, String scaleCycleKey) {
+        if (isDisabled() || scaleCycleKey == null) {
+            return;
+        }
+
+        var projectCycles = cycleKeysByProject.computeIfAbsent(projectKey, key -> new ConcurrentHashMap<>());
+
+        if (projectCycles.put(squadCycleName, scaleCycleKey) == null) {
+            append(CYCLE_RECORD, projectKey, squadCycleName, scaleCycleKey);
+        }
+    }
+
+    /**
+     * Marks every page before nextPageStart as fully migrated and forces the journal to disk. lastIssueId is null
+     * without keyset pagination, attachmentsCsvLength is the length of the CSV once the page's rows are written
+     * to it, -1 when there is none.
+     */
+    public void pageCompleted(String projectKey, int nextPageStart, String lastIssueId, long attachmentsCsvLength) {
+        if (isDisabled()) {
+            return;
+        }
+
+        nextPageStartByProject.put(projectKey, nextPageStart);
+        unfinishedPageByProject.remove(projectKey);
+
+        if (lastIssueId != null) {
+            lastIssueIdByProject.put(projectKey, lastIssueId);
+        }
+
+        if (attachmentsCsvLength >= 0) {
+            recordAttachmentsCsvLength(attachmentsCsvLength);
+        }
+
+        append(PAGE_RECORD, projectKey, String.valueOf(nextPageStart), lastIssueId == null ? "" : lastIssueId,
+                String.valueOf(attachmentsCsvLength));
+        sync();
+    }
+
+    public void projectDone(String projectKey) {
+        if (isDisabled()) {
+            return;
+        }
+
+        projectsDone.add(projectKey);
+        releaseProject(projectKey);
+        append(PROJECT_DONE_RECORD, projectKey);
+        sync();
+    }
+
+    //nothing but the project being done is asked about it anymore
+    private void releaseProject(String projectKey) {
+        unfinishedPageByProject.remove(projectKey);
+        cycleKeysByProject.remove(projectKey);
+        nextPageStartByProject.remove(projectKey);
+        lastIssueIdByProject.remove(projectKey);
+    }
+
+    //pages of different projects complete concurrently, the CSV only grows so the largest length is the latest
+    private synchronized void recordAttachmentsCsvLength(long length) {
+        attachmentsCsvLength = Math.max(attachmentsCsvLength, length);
+    }
+
+    //a disabled journal remembers nothing, so it never makes the migrator skip any work
+    private boolean isDisabled() {
+        return channel == null;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (isDisabled()) {
+            return;
+        }
+
+        writer.flush();
+        channel.force(false);
+        writer.close();
+    }
+
+    private synchronized void append(String... fields) {
+        try {
+            var line = new StringBuilder();
+
+            for (int i = 0; i < fields.length; i++) {
+                if (i > 0) {
+                    line.append(SEPARATOR);
+                }
+                line.append(escape(fields[i]));
+            }
+
+            writer.write(line.append('\n').toString());
+            writer.flush();
+        } catch (IOException exception) {
+            logger.error("Failed to write to migration journal " + exception.getMessage(), exception);
+            throw new RuntimeException(exception);
+        }
+    }
+
+    private synchronized void sync() {
+        if (isDisabled()) {
+            return;
+        }
+
+        try {
+            writer.flush();
+            channel.force(false);
+        } catch (IOException exception) {
+            logger.error("Failed to sync migration journal " + exception.getMessage(), exception);
+            throw new RuntimeException(exception);
+        }
+    }
+
+    //a record cut short when the previous run died would otherwise be glued to the first one appended now
+    private static void truncateTornRecord(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            var size = channel.size();
+            var lastByte = ByteBuffer.allocate(1);
+            var end = size;
+
+            while (end > 0) {
+                lastByte.clear();
+                channel.read(lastByte, end - 1);
+                if (lastByte.get(0) == '\n') {
+                    break;
+                }
+                end--;
+            }
+
+            if (end < size) {
+                logger.warn("Discarding " + (size - end) + " bytes of an incomplete record at the end of migration "
+                        + "journal " + path);
+                channel.truncate(end);
+                channel.force(false);
+            }
+        }
+    }
+
+    private void replay(Path path) throws IOException {
+        var records = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (applyRecord(line.split(SEPARATOR, -1))) {
+                    records++;
+                } else {
+                    logger.warn("Ignoring malformed migration journal record: " + line);
+                }
+            }
+        }
+
+        logger.info("Replayed " + records + " records from migration journal " + path);
+    }
+
+    private boolean applyRecord(String[] fields) {
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = unescape(fields[i]);
+        }
+
+        switch (fields[0]) {
+            case RUN_RECORD -> {
+                if (fields.length != 3) return false;
+                journaledRun = new RunSettings(fields[1], fields[2]);
+            }
+            case PROJECT_SETUP_RECORD -> {
+                if (fields.length != 2) return false;
+                projectsSetUp.add(fields[1]);
+            }
+            case TEST_CASE_RECORD -> {
+                if (fields.length != 4) return false;
+                unfinishedPage(fields[1]).testCaseKeyByIssueId().put(fields[2], fields[3]);
+            }
+            case TEST_STEPS_RECORD -> {
+                if (fields.length != 3) return false;
+                unfinishedPage(fields[1]).issuesWithStepsUpdated().add(fields[2]);
+            }
+            case TEST_EXECUTION_RECORD -> {
+                if (fields.length != 4) return false;
+                unfinishedPage(fields[1]).testResultIdByExecutionId().put(fields[2], fields[3]);
+            }
+            case CYCLE_RECORD -> {
+                if (fields.length != 4) return false;
+                cycleKeysByProject.computeIfAbsent(fields[1], key -> new ConcurrentHashMap<>())
+                        .put(fields[2], fields[3]);
+            }
+            case PAGE_RECORD -> {
+                if (fields.length < 3 || fields.length > 5) return false;
+                try {
+                    nextPageStartByProject.put(fields[1], Integer.parseInt(fields[2]));
+                    if (fields.length == 5 && Long.parseLong(fields[4]) >= 0) {
+                        recordAttachmentsCsvLength(Long.parseLong(fields[4]));
+                    }
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+                if (fields.length >= 4 && !fields[3].isEmpty()) {
+                    lastIssueIdByProject.put(fields[1], fields[3]);
+                }
+                //everything recorded for the project so far belongs to pages that are done
+                unfinishedPageByProject.remove(fields[1]);
+            }
+            case PROJECT_DONE_RECORD -> {
+                if (fields.length != 2) return false;
+                projectsDone.add(fields[1]);
+                releaseProject(fields[1]);
+            }
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private PageRecords unfinishedPage(String projectKey) {
+        return unfinishedPageByProject.computeIfAbsent(projectKey, key -> new PageRecords(
+                new ConcurrentHashMap<>(), ConcurrentHashMap.newKeySet(), new ConcurrentHashMap<>()));
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String value) {
+        var unescaped = new StringBuilder(value.length());
+
+        for (int i = 0; i < value.length(); i++) {
+            var current = value.charAt(i);
+
+            if (current != '\\' || i + 1 == value.length()) {
+                unescaped.append(current);
+                continue;
+            }
+
+            var next = value.charAt(++i);
+            switch (next) {
+                case 't' -> unescaped.append('\t');
+                case 'n' -> unescaped.append('\n');
+                case 'r' -> unescaped.append('\r');
+                default -> unescaped.append(next);
+            }
+        }
+
+        return unescaped.toString();
+    }
+
+    private record RunSettings(String projects, String paginationMode) {
+    }
+
+    //mappings replayed for the page a project was migrating when the previous run stopped
+    private record PageRecords(Map<String, String> testCaseKeyByIssueId,
+                               Set<String> issuesWithStepsUpdated,
+                               Map<String, String> testResultIdByExecutionId) {
+    }
+}
@@ -1,30 +1,45 @@
 package com.atlassian.migration.app.zephyr.migration;
 
 import com.atlassian.migration.app.zephyr.common.ProgressBarUtil;
+import com.atlassian.migration.app.zephyr.common.WorkerPool;
 import com.atlassian.migration.app.zephyr.jira.api.JiraApi;
+import com.atlassian.migration.app.zephyr.jira.api.JiraIssueIterator;
 import com.atlassian.migration.app.zephyr.jira.model.JiraIssuesResponse;
+import com.atlassian.migration.app.zephyr.migration.model.SquadTestCaseAttachmentsMap;
 import com.atlassian.migration.app.zephyr.migration.model.SquadToScaleEntitiesMap;
 import com.atlassian.migration.app.zephyr.migration.model.SquadToScaleTestCaseMap;
 import com.atlassian.migration.app.zephyr.migration.model.SquadToScaleTestExecutionMap;
 import com.atlassian.migration.app.zephyr.migration.model.SquadToScaleTestStepMap;
-import com.atlassian.migration.app.zephyr.migration.service.Resettable;
 import com.atlassian.migration.app.zephyr.migration.service.ScaleCycleService;
 import com.atlassian.migration.app.zephyr.migration.service.ScaleTestCasePayloadFacade;
 import com.atlassian.migration.app.zephyr.migration.service.ScaleTestExecutionPayloadFacade;
+import com.atlassian.migration.app.zephyr.migration.service.SquadExecutionService;
+import com.atlassian.migration.app.zephyr.migration.service.WikiMarkupRenderer;
 import com.atlassian.migration.app.zephyr.scale.api.ScaleApi;
 import com.atlassian.migration.app.zephyr.scale.model.*;
 import com.atlassian.migration.app.zephyr.squad.api.SquadApi;
+import com.atlassian.migration.app.zephyr.squad.model.FetchSquadTestStepResponse;
+import com.atlassian.migration.app.zephyr.squad.model.SquadExecutionItemParsedResponse;
 import com.atlassian.migration.app.zephyr.squad.model.SquadTestStepResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
-public class SquadToScaleMigrator {
+public class SquadToScaleMigrator implements AutoCloseable {
 
     private static final Logger logger = LoggerFactory.getLogger(SquadToScaleMigrator.class);
 
@@ -33,42 +48,110 @@ public class SquadToScaleMigrator {
     private final ScaleApi scaleApi;
     private final SquadApi squadApi;
 
-    private final ScaleCycleService scaleCycleService;
-    private final ScaleTestExecutionPayloadFacade scaleTestExecutionPayloadFacade;
+    //cycle and user caches are kept per project, so projects migrated at the same time don't see each other's
+    private final Map<String, ProjectContext> projectContexts = new ConcurrentHashMap<>();
 
     private final ScaleTestCasePayloadFacade scaleTestCaseFacade;
 
     private final AttachmentsMigrator attachmentsMigrator;
 
-    private final List<Resettable> resettables = new ArrayList<>();
+    //null when every unit of work runs sequentially on the calling thread
+    private final WorkerPool workerPool;
+
+    private final MigrationJournal journal;
+    private final Object pageCommitLock = new Object();
+
+    //one pool per stage of the pipelined mode, null when pages are processed phase by phase
+    private final WorkerPool testCaseStage;
+    private final WorkerPool testDataStage;
+    private final WorkerPool attachmentsStage;
 
     public SquadToScaleMigrator(JiraApi jiraApi, SquadApi squadApi, ScaleApi scaleApi, AttachmentsMigrator attachmentsMigrator,
                                 MigrationConfiguration migConfig) {
+        this(jiraApi, squadApi, scaleApi, attachmentsMigrator, migConfig, createWorkerPool(migConfig));
+    }
+
+    public SquadToScaleMigrator(JiraApi jiraApi, SquadApi squadApi, ScaleApi scaleApi, AttachmentsMigrator attachmentsMigrator,
+                                MigrationConfiguration migConfig, WorkerPool workerPool) {
+        this(jiraApi, squadApi, scaleApi, attachmentsMigrator, migConfig, workerPool, MigrationJournal.disabled());
+    }
+
+    public SquadToScaleMigrator(JiraApi jiraApi, SquadApi squadApi, ScaleApi scaleApi, AttachmentsMigrator attachmentsMigrator,
+                                MigrationConfiguration migConfig, WorkerPool workerPool, MigrationJournal journal) {
         this.jiraApi = jiraApi;
         this.scaleApi = scaleApi;
         this.squadApi = squadApi;
         this.config = migConfig;
 
-        this.scaleTestExecutionPayloadFacade = new ScaleTestExecutionPayloadFacade(jiraApi);
-        this.scaleCycleService = new ScaleCycleService(scaleApi, config.cycleNamePlaceHolder());
+        this.scaleTestCaseFacade = new ScaleTestCasePayloadFacade(jiraApi, config.wikiRenderer());
+        this.attachmentsMigrator = attachmentsMigrator;
+        this.workerPool = workerPool;
+        this.journal = journal;
 
-        resettables.addAll(List.of(scaleCycleService, scaleTestExecutionPayloadFacade));
+        this.testCaseStage = createPipelineStage(config, "pipeline-test-cases");
+        this.testDataStage = createPipelineStage(config, "pipeline-test-data");
+        this.attachmentsStage = createPipelineStage(config, "pipeline-attachments");
+    }
 
-        this.scaleTestCaseFacade = new ScaleTestCasePayloadFacade(jiraApi);
-        this.attachmentsMigrator = attachmentsMigrator;
+    /**
+     * Virtual mode runs every per-issue unit of work on its own virtual thread, capped by maxInFlightTasks.
+     * Platform mode only parallelizes test case creation, and only when more than one thread is configured.
+     */
+    public static WorkerPool createWorkerPool(MigrationConfiguration config) {
+        if (config.runsOnVirtualThreads()) {
+            return WorkerPool.virtual(config.maxInFlightTasks(), "migration-worker");
+        }
+
+        if (config.testCaseCreationThreads() > 1) {
+            return WorkerPool.platform(config.testCaseCreationThreads(), "test-case-creation");
+        }
+
+        return null;
+    }
+
+    /**
+     * Every stage has its own pool, capped at the same number of in-flight tasks. Issues are handed to the next
+     * stage without blocking, see {@link #processPagePipelined}, so they queue up there instead of holding a
+     * worker of the stage they leave.
+     */
+    private static WorkerPool createPipelineStage(MigrationConfiguration config, String namePrefix) {
+        if (!config.runsPipelined()) {
+            return null;
+        }
+
+        if (config.runsOnVirtualThreads()) {
+            return WorkerPool.virtual(config.maxInFlightTasks(), namePrefix);
+        }
+
+        return WorkerPool.platform(Math.max(1, config.testCaseCreationThreads()), namePrefix);
+    }
+
+    //only the pipeline stages belong to the migrator, the worker pool is shared with the attachments migrator
+    @Override
+    public void close() {
+        for (var stage : Arrays.asList(testCaseStage, testDataStage, attachmentsStage)) {
+            if (stage != null) {
+                stage.close();
+            }
+        }
     }
 
     public void getProjectListAndRunMigration() {
         try {
             GetAllProjectsResponse getAllProjectsResponse = squadApi.getAllProjects();
             List<Option> projects = getAllProjectsResponse.options();
+
+            if (config.projectConcurrency() > 1) {
+                runMigrationConcurrently(projects);
+                return;
+            }
+
             int projectIndex = 0;
             long startTimeMillis = System.currentTimeMillis();
 
             for (Option option : projects) {
                 logger.info("Project progress: " + ProgressBarUtil.getProgressBar(projectIndex++, projects.size(), startTimeMillis));
                 runMigration(jiraApi.getProjectById(option.value()).key());
-                reset();
             }
 
             logger.info("Project progress: " + ProgressBarUtil.getProgressBar(projects.size(), projects.size(), startTimeMillis));
@@ -78,11 +161,88 @@ public class SquadToScaleMigrator {
         }
     }
 
+    /**
+     * Migrates up to projectConcurrency projects at once. Projects are sized upfront and started largest first,
+     * so the biggest ones run alongside the small ones instead of being picked up last and running alone at the
+     * end of the migration.
+     */
+    private void runMigrationConcurrently(List<Option> projects) {
+        logger.info("Fetching total issues of " + projects.size() + " projects...");
+
+        try (var projectPool = WorkerPool.platform(Math.max(1, Math.min(config.projectConcurrency(), projects.size())),
+                "project-migration")) {
+
+            //sized on the same pool, as many at once as projects are migrated
+            List<CompletableFuture<ProjectSize>> pendingProjectSizes = new ArrayList<>();
+
+            for (var option : projects) {
+                pendingProjectSizes.add(projectPool.submit(() -> sizeProject(option)));
+            }
+
+            awaitAll(pendingProjectSizes, "Failed to fetch total issues of project ");
+
+            var projectSizes = pendingProjectSizes.stream()
+                    .map(CompletableFuture::join)
+                    .filter(Objects::nonNull)
+                    .sorted(Comparator.comparingInt(ProjectSize::totalIssues).reversed())
+                    .toList();
+
+            var migratedProjects = new AtomicInteger();
+            long startTimeMillis = System.currentTimeMillis();
+
+            List<CompletableFuture<Void>> pendingProjects = new ArrayList<>();
+
+            for (var projectSize : projectSizes) {
+                pendingProjects.add(projectPool.submit(() -> {
+                    migrateProject(projectSize.projectKey(), projectSize.totalIssues());
+                    logger.info("Project progress: " + ProgressBarUtil.getProgressBar(migratedProjects.incrementAndGet(),
+                            projectSizes.size(), startTimeMillis));
+                    return null;
+                }));
+            }
+
+            awaitAll(pendingProjects, "Failed to migrate project ");
+        }
+    }
+
+    //null when the project was already migrated by a previous run
+    private ProjectSize sizeProject(Option option) throws IOException {
+        var projectKey = jiraApi.getProjectById(option.value()).key();
+
+        if (journal.isProjectDone(projectKey)) {
+            logger.info("Project " + projectKey + " was already migrated, skipping it");
+            return null;
+        }
+
+        return new ProjectSize(projectKey, jiraApi.fetchTotalIssuesByProjectName(projectKey));
+    }
+
     public void runMigration(String projectKey) {
         try {
+            if (journal.isProjectDone(projectKey)) {
+                logger.info("Project " + projectKey + " was already migrated, skipping it");
+                return;
+            }
+
             logger.info("Fetching total issues by project key...");
-            var total = jiraApi.fetchTotalIssuesByProjectName(projectKey);
+            migrateProject(projectKey, jiraApi.fetchTotalIssuesByProjectName(projectKey));
+        } catch (Exception exception) {
+            logger.error("Failed to run migration " + exception.getMessage(), exception);
+            throw new RuntimeException(exception);
+        }
+    }
 
+    //no other page is exported between writing a page's attachments and recording it, so the CSV length it is
+    //recorded with never includes rows of a page that isn't recorded yet
+    private void commitPage(String projectKey, int nextPageStart, String lastIssueId) {
+        synchronized (pageCommitLock) {
+            var attachmentsCsvLength = attachmentsMigrator.commitPage(projectKey);
+            journal.pageCompleted(projectKey, nextPageStart, lastIssueId, attachmentsCsvLength);
+        }
+    }
+
+    private void migrateProject(String projectKey, int total) {
+        try {
             if (total == 0) {
                 logger.info("Project doesn't have Squad Objects, skipping it");
                 return;
@@ -93,42 +253,115 @@ public class SquadToScaleMigrator {
             logger.info("Enabling project in Scale...");
             scaleApi.enableProject(new EnableProjectPayload(projectKey, true));
 
-            logger.info("Creating migration Custom Fields...");
-            createMigrationCustomFields(projectKey);
-
-            var startAt = 0;
-            long startTimeMillis = System.currentTimeMillis();
-            while (startAt < total) {
-                logger.info("Issue progress: "
-                        + ProgressBarUtil.getProgressBar(startAt, total, startTimeMillis));
+            if (!journal.isProjectSetUp(projectKey)) {
+                logger.info("Creating migration Custom Fields...");
+                createMigrationCustomFields(projectKey);
+                journal.projectSetUp(projectKey);
+            }
 
-                processPage(startAt, projectKey);
+            journal.cycleKeys(projectKey).forEach(projectContext(projectKey).cycleService()::restoreCycle);
 
-                startAt += config.pageSteps();
+            var startAt = journal.nextPageStart(projectKey);
+            if (startAt > 0) {
+                logger.info("Resuming migration of project " + projectKey + " at issue " + startAt);
+            }
 
+            long startTimeMillis = System.currentTimeMillis();
+            try (var issueIterator = config.streamsSearchPages()
+                    ? iterateIssues(projectKey, startAt, journal.lastIssueId(projectKey))
+                    : null;
+                 var pageReader = new IssuePageReader(
+                         issueIterator != null
+                                 ? (pageStart, afterIssueId) -> fetchPage(issueIterator)
+                                 : (pageStart, afterIssueId) -> fetchPage(pageStart, afterIssueId, projectKey),
+                         config.paginationMode(), startAt, journal.lastIssueId(projectKey), total,
+                         config.pageSteps(), config.pagePrefetchDepth())) {
+
+                while (pageReader.hasNext()) {
+                    var page = pageReader.next();
+
+                    logger.info("Issue progress: "
+                            + ProgressBarUtil.getProgressBar(page.startAt(), total, startTimeMillis));
+
+                    processPage(page.startAt(), page.issues(), projectKey);
+                    commitPage(projectKey, page.startAt() + config.pageSteps(), page.lastIssueId());
+                }
             }
+            journal.projectDone(projectKey);
             logger.info("Issue progress: "
                     + ProgressBarUtil.getProgressBar(total, total, startTimeMillis));
         } catch (Exception exception) {
-            logger.error("Failed to run migration " + exception.getMessage(), exception);
+            logger.error("Failed to run migration of project " + projectKey + " " + exception.getMessage(), exception);
             throw new RuntimeException(exception);
+        } finally {
+            //dropping the project caches to avoid heavy memory usage once it is migrated
+            var projectContext = projectContexts.remove(projectKey);
+            if (projectContext != null) {
+                projectContext.executionService().release();
+            }
+            attachmentsMigrator.releaseProject(projectKey);
         }
     }
 
-    private void processPage(int startAt, String projectKey) {
-        try {
+    private ProjectContext projectContext(String projectKey) {
+        return projectContexts.computeIfAbsent(projectKey, key -> new ProjectContext(
+                new ScaleCycleService(scaleApi, config.cycleNamePlaceHolder()),
+                new ScaleTestExecutionPayloadFacade(jiraApi),
+                new SquadExecutionService(squadApi, projectKey, config.executionExtraction())));
+    }
+
+    private List<JiraIssuesResponse> fetchPage(int startAt, String afterIssueId, String projectKey) throws IOException {
+        List<JiraIssuesResponse> issues;
 
+        if (config.paginationMode() == IssuePageReader.PaginationMode.KEYSET) {
+            logger.info("Fetching issues after issue id " + afterIssueId + "...");
+
+            issues = jiraApi.fetchIssuesOrderedById(
+                    projectKey,
+                    afterIssueId,
+                    config.pageSteps());
+        } else {
             logger.info("Fetching issues starting at " + startAt + "...");
 
-            var issues = jiraApi.fetchIssuesOrderedByCreatedDate(
+            issues = jiraApi.fetchIssuesOrderedByCreatedDate(
                     projectKey,
                     startAt,
                     config.pageSteps());
+        }
+
+        logger.info("Fetched " + issues.size() + " issues.");
 
-            logger.info("Fetched " + issues.size() + " issues.");
+        return issues;
+    }
+
+    //search pages larger than a batch are read issue by issue and split into batches as they stream in
+    private JiraIssueIterator iterateIssues(String projectKey, int startAt, String afterIssueId) {
+        logger.info("Reading issues through searches of " + config.searchPageSize() + " issues...");
+
+        if (config.paginationMode() == IssuePageReader.PaginationMode.KEYSET) {
+            return jiraApi.iterateIssuesOrderedById(projectKey, afterIssueId, config.searchPageSize());
+        }
+        return jiraApi.iterateIssuesOrderedByCreatedDate(projectKey, startAt, config.searchPageSize());
+    }
 
+    private List<JiraIssuesResponse> fetchPage(JiraIssueIterator issueIterator) {
+        var issues = issueIterator.next(config.pageSteps());
+
+        logger.info("Fetched " + issues.size() + " issues.");
+
+        return issues;
+    }
+
+    private void processPage(int startAt, List<JiraIssuesResponse> issues, String projectKey) {
+        if (config.runsPipelined()) {
+            processPagePipelined(issues, projectKey);
+            return;
+        }
+
+        try {
             var testCaseMap = createScaleTestCases(issues, projectKey);
-            var squadToScaleEntitiesMap = updateStepsAndPostExecution(testCaseMap, projectKey);
+            var squadToScaleEntitiesMap = updateStepsAndPostExecution(testCaseMap,
+                    SquadTestCaseAttachmentsMap.fromIssues(issues), projectKey);
 
             attachmentsMigrator.export(squadToScaleEntitiesMap, projectKey);
         } catch (IOException exception) {
@@ -137,6 +370,65 @@ public class SquadToScaleMigrator {
         }
     }
 
+    /**
+     * Moves each issue through test case creation, steps and executions, and attachment mapping on its own, as
+     * soon as its previous stage is done, so the Jira, Squad and Scale calls of different issues overlap. The page
+     * is only over once all of its issues went through every stage, which keeps journal pages consistent.
+     * Only the first stage blocks this thread when it is full. The later ones are reached from a worker of the
+     * previous stage, so their tasks wait in the stage's queue, at most a page worth of issues. Attachment
+     * mapping also waits for the page's test cases to be created, so their Scale ids are resolved in one lookup.
+     */
+    private void processPagePipelined(List<JiraIssuesResponse> issues, String projectKey) {
+        List<CompletableFuture<String>> createdTestCases = new ArrayList<>();
+
+        for (var issue : issues) {
+            createdTestCases.add(testCaseStage.submit(() -> createTestCaseForIssue(issue, projectKey)));
+        }
+
+        //the Scale ids are looked up once for the page, as soon as its test cases exist, not once per issue
+        var pageTestCaseIds = CompletableFuture.allOf(createdTestCases.toArray(CompletableFuture[]::new))
+                .handle((unused, failure) -> createdTestCases.stream()
+                        .filter(createdTestCase -> !createdTestCase.isCompletedExceptionally())
+                        .map(CompletableFuture::join)
+                        .toList())
+                .thenCompose(scaleTestCaseKeys -> attachmentsStage.enqueue(() ->
+                        attachmentsMigrator.resolveTestCaseIds(scaleTestCaseKeys)));
+
+        List<CompletableFuture<Void>> pendingIssues = new ArrayList<>();
+
+        for (int i = 0; i < issues.size(); i++) {
+            var issue = issues.get(i);
+            var testCaseMapKey = new SquadToScaleTestCaseMap.TestCaseMapKey(issue.id(), issue.key());
+
+            var migratedIssue = createdTestCases.get(i)
+                    .thenCompose(scaleTestCaseKey -> testDataStage.enqueue(() ->
+                            updateStepsAndPostExecutionForIssue(testCaseMapKey, scaleTestCaseKey, issue, projectKey)))
+                    .thenCombine(pageTestCaseIds, Map::entry)
+                    .thenCompose(exportable -> attachmentsStage.enqueue(() -> {
+                        attachmentsMigrator.export(exportable.getKey(), projectKey, exportable.getValue());
+                        return (Void) null;
+                    }));
+
+            pendingIssues.add(migratedIssue);
+        }
+
+        awaitAll(pendingIssues, "Failed to migrate issue ");
+    }
+
+    private SquadToScaleEntitiesMap updateStepsAndPostExecutionForIssue(
+            SquadToScaleTestCaseMap.TestCaseMapKey testCaseMapKey, String scaleTestCaseKey, JiraIssuesResponse issue,
+            String projectKey) throws IOException {
+
+        var testCaseMap = new SquadToScaleTestCaseMap();
+        testCaseMap.put(testCaseMapKey, scaleTestCaseKey);
+
+        var testCaseItem = Map.entry(testCaseMapKey, scaleTestCaseKey);
+
+        return new SquadToScaleEntitiesMap(testCaseMap,
+                updateStepsForTestCase(testCaseItem, projectKey),
+                createTestExecutionForTestCase(testCaseItem, projectKey),
+                SquadTestCaseAttachmentsMap.fromIssues(List.of(issue)));
+    }
 
     private void createMigrationCustomFields(String projectKey) {
         try {
@@ -171,6 +463,10 @@ public class SquadToScaleMigrator {
     private SquadToScaleTestCaseMap createScaleTestCases(List<JiraIssuesResponse> issues, String
             projectKey) throws IOException {
         try {
+            if (workerPool != null) {
+                return createScaleTestCasesConcurrently(issues, projectKey);
+            }
+
             var map = new SquadToScaleTestCaseMap();
 
             for (var issue : issues) {
@@ -184,13 +480,39 @@ public class SquadToScaleMigrator {
         }
     }
 
+    private SquadToScaleTestCaseMap createScaleTestCasesConcurrently(List<JiraIssuesResponse> issues,
+                                                                    String projectKey) {
+        Map<SquadToScaleTestCaseMap.TestCaseMapKey, CompletableFuture<String>> pendingTestCases = new LinkedHashMap<>();
+
+        for (var issue : issues) {
+            pendingTestCases.put(new SquadToScaleTestCaseMap.TestCaseMapKey(issue.id(), issue.key()),
+                    workerPool.submit(() -> createTestCaseForIssue(issue, projectKey)));
+        }
+
+        //the map is only filled from the calling thread, workers just hand back the Scale keys
+        var map = new SquadToScaleTestCaseMap();
+
+        awaitAll(pendingTestCases.values(), "Failed to create Scale test cases ");
+
+        pendingTestCases.forEach((testCaseMapKey, pendingTestCase) -> map.put(testCaseMapKey, pendingTestCase.join()));
+
+        return map;
+    }
+
     private String createTestCaseForIssue(JiraIssuesResponse issue, String projectKey) throws
             IOException {
 
         try {
+            var migratedTestCaseKey = journal.testCaseKey(projectKey, issue.id());
+            if (migratedTestCaseKey != null) {
+                logger.info("Squad test case " + issue.id() + " was already migrated to " + migratedTestCaseKey + ", skipping it.");
+                return migratedTestCaseKey;
+            }
+
             ScaleTestCaseCreationPayload testCasePayload = this.scaleTestCaseFacade.createTestCasePayload(issue, projectKey);
 
             var scaleTestCaseKey = scaleApi.createTestCases(testCasePayload);
+            journal.testCaseCreated(projectKey, issue.id(), scaleTestCaseKey);
 
             logger.info("Created Scale test Case from Squad test case " + issue.id() + ".");
 
@@ -201,8 +523,9 @@ public class SquadToScaleMigrator {
         }
     }
 
-    private SquadToScaleEntitiesMap updateStepsAndPostExecution(SquadToScaleTestCaseMap
-                                                                        testCaseMap, String projectKey) throws IOException {
+    private SquadToScaleEntitiesMap updateStepsAndPostExecution(SquadToScaleTestCaseMap testCaseMap,
+                                                                SquadTestCaseAttachmentsMap testCaseAttachmentsMap,
+                                                                String projectKey) throws IOException {
         try {
             var orderedIssueList = testCaseMap.getListOfAllEntriesOrdered();
 
@@ -212,66 +535,141 @@ public class SquadToScaleMigrator {
             var testStepMap = new SquadToScaleTestStepMap();
             var testExecutionMap = new SquadToScaleTestExecutionMap();
 
-            for (var testCaseItem : orderedIssueList) {
-                testStepMap.putAll(updateStepsForTestCase(testCaseItem));
-                testExecutionMap.putAll(createTestExecutionForTestCase(testCaseItem, projectKey));
+            if (workerPool != null && workerPool.executionMode() == WorkerPool.ExecutionMode.VIRTUAL) {
+                updateStepsAndPostExecutionConcurrently(orderedIssueList, projectKey, testStepMap, testExecutionMap);
+            } else {
+                //the step updates of the page are sent while the executions are posted one test case at a time
+                List<CompletableFuture<SquadToScaleTestStepMap>> pendingSteps = orderedIssueList.stream()
+                        .map(testCaseItem -> updateStepsForTestCaseAsync(testCaseItem, projectKey))
+                        .toList();
+
+                for (var testCaseItem : orderedIssueList) {
+                    testExecutionMap.putAll(createTestExecutionForTestCase(testCaseItem, projectKey));
+                }
+
+                awaitAll(pendingSteps, "Failed to update steps ");
+                pendingSteps.forEach(pendingStep -> testStepMap.putAll(pendingStep.join()));
             }
 
             logger.info("Updated steps and created test executions for " + orderedIssueList.size() + " issues.");
 
-            return new SquadToScaleEntitiesMap(testCaseMap, testStepMap, testExecutionMap);
+            return new SquadToScaleEntitiesMap(testCaseMap, testStepMap, testExecutionMap, testCaseAttachmentsMap);
         } catch (IOException exception) {
             logger.error("Failed to update steps and post execution " + exception.getMessage(), exception);
             throw new RuntimeException(exception);
         }
     }
 
-    private SquadToScaleTestStepMap updateStepsForTestCase
-            (Map.Entry<SquadToScaleTestCaseMap.TestCaseMapKey, String> testCaseItem)
-            throws IOException {
-        try {
-            logger.info("Fetching latest Squad test step from " + testCaseItem.getKey().testCaseId() + "...");
-
-            var testStepMap = new SquadToScaleTestStepMap();
+    private void updateStepsAndPostExecutionConcurrently(
+            List<Map.Entry<SquadToScaleTestCaseMap.TestCaseMapKey, String>> orderedIssueList, String projectKey,
+            SquadToScaleTestStepMap testStepMap, SquadToScaleTestExecutionMap testExecutionMap) {
 
-            var squadTestSteps = squadApi.fetchLatestTestStepByTestCaseId(testCaseItem.getKey().testCaseId());
+        List<CompletableFuture<SquadToScaleTestStepMap>> pendingSteps = new ArrayList<>();
+        List<CompletableFuture<SquadToScaleTestExecutionMap>> pendingExecutions = new ArrayList<>();
 
-            if (squadTestSteps.stepBeanCollection().isEmpty()) {
-                return testStepMap;
-            }
+        for (var testCaseItem : orderedIssueList) {
+            pendingSteps.add(updateStepsForTestCaseAsync(testCaseItem, projectKey));
+            pendingExecutions.add(workerPool.submit(() -> createTestExecutionForTestCase(testCaseItem, projectKey)));
+        }
 
-            var steps = new SquadUpdateStepPayload(new SquadGETStepItemPayload());
+        awaitAll(pendingSteps, "Failed to update steps ");
+        awaitAll(pendingExecutions, "Failed to post executions ");
 
-            steps.testScript().steps = squadTestSteps.stepBeanCollection().stream()
-                    .map(e -> ScaleGETStepItemPayload.createScaleGETStepItemPayloadForCreation(
-                            e.htmlStep(),
-                            e.htmlData(),
-                            e.htmlResult())).toList();
+        pendingSteps.forEach(pendingStep -> testStepMap.putAll(pendingStep.join()));
+        pendingExecutions.forEach(pendingExecution -> testExecutionMap.putAll(pendingExecution.join()));
+    }
 
-            logger.info("Updating steps for scale test case...");
-            scaleApi.updateTestStep(testCaseItem.getValue(), steps);
+    private static void awaitAll(Collection<? extends CompletableFuture<?>> pendingTasks, String errorMessage) {
+        try {
+            CompletableFuture.allOf(pendingTasks.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException exception) {
+            var cause = exception.getCause() != null ? exception.getCause() : exception;
+            logger.error(errorMessage + cause.getMessage(), cause);
+            pendingTasks.forEach(pendingTask -> pendingTask.cancel(true));
+            throw new RuntimeException(cause);
+        }
+    }
 
-            //only mapping if updateTestStep was successful
-            testStepMap.put(testCaseItem.getValue(),
-                    squadTestSteps.stepBeanCollection().stream().collect(Collectors
-                            .toMap(testStepResponse -> new SquadToScaleTestStepMap.TestStepMapKey(
-                                    testStepResponse.id(), testStepResponse.orderId()
-                            ), SquadTestStepResponse::attachmentsMap)));
-            return testStepMap;
-        } catch (IOException exception) {
-            logger.error("Failed to update steps for Scale test case with test case id: " + testCaseItem.getKey().testCaseId() + " " + exception.getMessage(), exception);
-            throw new RuntimeException(exception);
+    private SquadToScaleTestStepMap updateStepsForTestCase
+            (Map.Entry<SquadToScaleTestCaseMap.TestCaseMapKey, String> testCaseItem, String projectKey) {
+        try {
+            return updateStepsForTestCaseAsync(testCaseItem, projectKey).join();
+        } catch (CompletionException exception) {
+            throw new RuntimeException(exception.getCause() != null ? exception.getCause() : exception);
         }
     }
 
+    /**
+     * Both requests of a step update are sent without holding a thread, so the updates of a whole page are in
+     * flight together, bounded only by the per-host concurrency limit.
+     */
+    private CompletableFuture<SquadToScaleTestStepMap> updateStepsForTestCaseAsync
+            (Map.Entry<SquadToScaleTestCaseMap.TestCaseMapKey, String> testCaseItem, String projectKey) {
+
+        var testCaseId = testCaseItem.getKey().testCaseId();
+
+        logger.info("Fetching latest Squad test step from " + testCaseId + "...");
+
+        return squadApi.fetchLatestTestStepByTestCaseIdAsync(testCaseId)
+                .thenCompose(squadTestSteps -> {
+                    if (squadTestSteps.stepBeanCollection().isEmpty()) {
+                        return CompletableFuture.completedFuture(new SquadToScaleTestStepMap());
+                    }
+
+                    //the Squad steps are still needed to map their attachments, only the update itself is skipped
+                    if (journal.areStepsUpdated(projectKey, testCaseId)) {
+                        logger.info("Steps of Squad test case " + testCaseId + " were already migrated, skipping update.");
+                        return CompletableFuture.completedFuture(mapTestSteps(testCaseItem, squadTestSteps));
+                    }
+
+                    var steps = new SquadUpdateStepPayload(new SquadGETStepItemPayload());
+
+                    steps.testScript().steps = squadTestSteps.stepBeanCollection().stream()
+                            .map(e -> ScaleGETStepItemPayload.createScaleGETStepItemPayloadForCreation(
+                                    e.htmlStep(),
+                                    e.htmlData(),
+                                    e.htmlResult())).toList();
+
+                    logger.info("Updating steps for scale test case...");
+
+                    //only mapping if updateTestStep was successful
+                    return scaleApi.updateTestStepAsync(testCaseItem.getValue(), steps)
+                            .thenApply(unused -> {
+                                journal.stepsUpdated(projectKey, testCaseId);
+                                return mapTestSteps(testCaseItem, squadTestSteps);
+                            });
+                })
+                .whenComplete((testStepMap, error) -> {
+                    if (error != null) {
+                        var cause = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        logger.error("Failed to update steps for Scale test case with test case id: " + testCaseId
+                                + " " + cause.getMessage(), cause);
+                    }
+                });
+    }
+
+    private static SquadToScaleTestStepMap mapTestSteps(
+            Map.Entry<SquadToScaleTestCaseMap.TestCaseMapKey, String> testCaseItem,
+            FetchSquadTestStepResponse squadTestSteps) {
+
+        var testStepMap = new SquadToScaleTestStepMap();
+
+        testStepMap.put(testCaseItem.getValue(),
+                squadTestSteps.stepBeanCollection().stream().collect(Collectors
+                        .toMap(testStepResponse -> new SquadToScaleTestStepMap.TestStepMapKey(
+                                testStepResponse.id(), testStepResponse.orderId()
+                        ), SquadTestStepResponse::attachmentsMap)));
+        return testStepMap;
+    }
+
     private SquadToScaleTestExecutionMap createTestExecutionForTestCase
             (Map.Entry<SquadToScaleTestCaseMap.TestCaseMapKey,
                     String> item, String projectKey) throws IOException {
         try {
             logger.info("Fetching latest Squad execution for test case " + item.getKey().testCaseId() + "...");
-            var execData = squadApi.fetchLatestExecutionByIssueId(item.getKey().testCaseId());
-
-            var executions = execData.executions();
+            var executions = projectContext(projectKey).executionService()
+                    .getExecutionsByIssueId(item.getKey().testCaseId());
 
             var testExecutionMap = new SquadToScaleTestExecutionMap();
 
@@ -281,22 +679,34 @@ public class SquadToScaleMigrator {
             }
 
 
+            //executions are grouped by target cycle, so each cycle receives its results in as few requests as possible
+            var executionsByCycleKey = new LinkedHashMap<String, List<SquadExecutionItemParsedResponse>>();
+
             for (var execution : executions) {
+                var migratedTestResultId = journal.testResultId(projectKey, execution.id());
+                if (migratedTestResultId != null) {
+                    testExecutionMap.put(new SquadToScaleTestExecutionMap.TestExecutionMapKey(execution.id()),
+                            migratedTestResultId);
+                    continue;
+                }
 
-                var scaleCycleKey = scaleCycleService.getCycleKeyBySquadCycleName(execution.cycleName(),
+                var scaleCycleKey = projectContext(projectKey).cycleService().getCycleKeyBySquadCycleName(execution.cycleName(),
                         projectKey, execution.versionName());
+                journal.cycleCreated(projectKey, execution.cycleName(), scaleCycleKey);
 
-                logger.info("Creating test executions...");
-
-                var testExecutionPayload = scaleTestExecutionPayloadFacade
-                        .buildPayload(execution, item.getValue(), projectKey);
+                executionsByCycleKey.computeIfAbsent(scaleCycleKey, key -> new ArrayList<>()).add(execution);
+            }
 
-                var scaleTestExecutionCreatedPayload = scaleApi.createTestExecution(scaleCycleKey,
-                        testExecutionPayload);
+            for (var cycleExecutions : executionsByCycleKey.entrySet()) {
+                var batchSize = Math.max(1, config.testResultsBatchSize());
 
-                testExecutionMap.put(new SquadToScaleTestExecutionMap.TestExecutionMapKey(execution.id()),
-                        scaleTestExecutionCreatedPayload.id());
+                for (int start = 0; start < cycleExecutions.getValue().size(); start += batchSize) {
+                    var batch = cycleExecutions.getValue().subList(start,
+                            Math.min(start + batchSize, cycleExecutions.getValue().size()));
 
+                    testExecutionMap.putAll(createTestExecutionBatch(cycleExecutions.getKey(), batch,
+                            item.getValue(), projectKey));
+                }
             }
 
             return testExecutionMap;
@@ -306,9 +716,67 @@ public class SquadToScaleMigrator {
         }
     }
 
-    //clearing per project caches to avoid heavy memory usage and conflicts
-    private void reset() {
-        resettables.forEach(Resettable::reset);
+    private SquadToScaleTestExecutionMap createTestExecutionBatch(String scaleCycleKey,
+                                                                  List<SquadExecutionItemParsedResponse> executions,
+                                                                  String scaleTestCaseKey,
+                                                                  String projectKey) throws IOException {
+        var payloads = new ArrayList<ScaleExecutionCreationPayload>(executions.size());
+
+        for (var execution : executions) {
+            payloads.add(projectContext(projectKey).executionPayloadFacade().buildPayload(execution, scaleTestCaseKey, projectKey));
+        }
+
+        logger.info("Creating " + payloads.size() + " test executions...");
+
+        var createdResults = scaleApi.createTestResults(scaleCycleKey, payloads).testResultsCreated();
+
+        //Scale answers with the created results in the same order they were sent
+        if (createdResults.size() != executions.size()) {
+            throw new IOException("Expected " + executions.size() + " test results to be created on cycle "
+                    + scaleCycleKey + " but received " + createdResults.size());
+        }
+
+        var testExecutionMap = new SquadToScaleTestExecutionMap();
+
+        for (int i = 0; i < executions.size(); i++) {
+            testExecutionMap.put(new SquadToScaleTestExecutionMap.TestExecutionMapKey(executions.get(i).id()),
+                    createdResults.get(i).id());
+            journal.testResultCreated(projectKey, executions.get(i).id(), createdResults.get(i).id());
+        }
+
+        return testExecutionMap;
+    }
+
+    public enum PageProcessingMode {
+        PHASED("phased"),
+        PIPELINED("pipelined");
+
+        private final String modeName;
+
+        PageProcessingMode(String modeName) {
+            this.modeName = modeName;
+        }
+
+        public static PageProcessingMode getPageProcessingModeByName(String name) {
+            return Arrays.stream(values())
+                    .filter(mode -> mode.modeName.equalsIgnoreCase(name))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unsupported page processing mode: " + name
+                            + ", Supported values: " + Arrays.toString(values())));
+        }
+
+        @Override
+        public String toString() {
+            return modeName;
+        }
+    }
+
+    private record ProjectContext(ScaleCycleService cycleService,
+                                  ScaleTestExecutionPayloadFacade executionPayloadFacade,
+                                  SquadExecutionService executionService) {
+    }
+
+    private record ProjectSize(String projectKey, int totalIssues) {
     }
 
 }
\ No newline at end of file
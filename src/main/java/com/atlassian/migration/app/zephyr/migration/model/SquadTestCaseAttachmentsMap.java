@@ -0,0 +1,27 @@
+package com.atlassian.migration.app.zephyr.migration.model;
+
+import com.atlassian.migration.app.zephyr.jira.model.Attachment;
+import com.atlassian.migration.app.zephyr.jira.model.JiraIssuesResponse;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Attachments of each Squad test case keyed by issue id, as already returned by the Jira search page, so they
+ * don't have to be fetched again per issue when mapping test case attachments.
+ */
+public class SquadTestCaseAttachmentsMap extends HashMap<String, List<Attachment>> {
+
+    public static SquadTestCaseAttachmentsMap fromIssues(List<JiraIssuesResponse> issues) {
+        var attachmentsMap = new SquadTestCaseAttachmentsMap();
+
+        for (var issue : issues) {
+            //issues searched without the attachment field are left out, so their attachments are still fetched
+            if (issue.fields() != null && issue.fields().attachment != null) {
+                attachmentsMap.put(issue.id(), issue.fields().attachment);
+            }
+        }
+
+        return attachmentsMap;
+    }
+}
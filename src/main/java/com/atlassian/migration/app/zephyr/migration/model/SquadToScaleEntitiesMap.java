@@ -5,5 +5,13 @@ public record SquadToScaleEntitiesMap (
 
         SquadToScaleTestStepMap testStepMap,
 
-        SquadToScaleTestExecutionMap testExecutionMap
-){}
+        SquadToScaleTestExecutionMap testExecutionMap,
+
+        SquadTestCaseAttachmentsMap testCaseAttachmentsMap
+){
+    public SquadToScaleEntitiesMap(SquadToScaleTestCaseMap testCaseMap,
+                                   SquadToScaleTestStepMap testStepMap,
+                                   SquadToScaleTestExecutionMap testExecutionMap) {
+        this(testCaseMap, testStepMap, testExecutionMap, new SquadTestCaseAttachmentsMap());
+    }
+}
@@ -1,7 +0,0 @@
-package com.atlassian.migration.app.zephyr.migration.service;
-
-@FunctionalInterface
-public interface Resettable {
-
-    void reset();
-}
@@ -5,14 +5,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
-public class ScaleCycleService implements Resettable {
+public class ScaleCycleService {
 
     private static final Logger logger = LoggerFactory.getLogger(ScaleCycleService.class);
 
-    private final Map<String, String> mapCreatedScaleCycles = new HashMap<>();
+    //concurrent, as executions of different test cases may ask for the same cycle at once. A cycle being created
+    //is already in the map, so the others wait for its key instead of creating it again
+    private final Map<String, CompletableFuture<String>> mapCreatedScaleCycles = new ConcurrentHashMap<>();
     private final ScaleApi scaleApi;
     private final String defaultCycleKey;
 
@@ -21,21 +24,35 @@ public class ScaleCycleService implements Resettable {
         this.defaultCycleKey = defaultCycleKey;
     }
 
-    @Override
-    public void reset() {
-        mapCreatedScaleCycles.clear();
+    //cycles created by a previous run, so a resumed migration doesn't create them a second time
+    public void restoreCycle(String squadCycleName, String scaleCycleKey) {
+        mapCreatedScaleCycles.put(squadCycleName, CompletableFuture.completedFuture(scaleCycleKey));
     }
 
     public String getCycleKeyBySquadCycleName(String squadCycleName, String projectKey, String versionName) {
 
-        var squadCycleVersion = translateSquadToScaleVersion(versionName);
+        var knownCycleKey = mapCreatedScaleCycles.get(squadCycleName);
+        if (knownCycleKey != null) {
+            return knownCycleKey.join();
+        }
+
+        //the cycle is created outside of the map, whose bin would stay locked during the whole Scale call
+        var cycleKey = new CompletableFuture<String>();
+        var cycleKeyOfOtherThread = mapCreatedScaleCycles.putIfAbsent(squadCycleName, cycleKey);
+        if (cycleKeyOfOtherThread != null) {
+            return cycleKeyOfOtherThread.join();
+        }
 
-        if (!mapCreatedScaleCycles.containsKey(squadCycleName)) {
-            var newScaleCycleKey = createNewScaleCycle(squadCycleName, projectKey, squadCycleVersion);
-            mapCreatedScaleCycles.put(squadCycleName, newScaleCycleKey);
+        try {
+            cycleKey.complete(createNewScaleCycle(squadCycleName, projectKey, translateSquadToScaleVersion(versionName)));
+        } catch (RuntimeException exception) {
+            //the next execution of this cycle tries again
+            mapCreatedScaleCycles.remove(squadCycleName, cycleKey);
+            cycleKey.completeExceptionally(exception);
+            throw exception;
         }
 
-        return mapCreatedScaleCycles.get(squadCycleName);
+        return cycleKey.join();
     }
 
     private String translateSquadToScaleVersion(String versionName) {
@@ -22,8 +22,16 @@ public class ScaleTestCasePayloadFacade {
 
     private final JiraApi jiraApi;
 
+    //null when every description is rendered by Jira
+    private final WikiMarkupRenderer wikiMarkupRenderer;
+
     public ScaleTestCasePayloadFacade(JiraApi jiraApi) {
+        this(jiraApi, WikiMarkupRenderer.RendererMode.REMOTE);
+    }
+
+    public ScaleTestCasePayloadFacade(JiraApi jiraApi, WikiMarkupRenderer.RendererMode rendererMode) {
         this.jiraApi = jiraApi;
+        this.wikiMarkupRenderer = rendererMode == WikiMarkupRenderer.RendererMode.LOCAL ? new WikiMarkupRenderer() : null;
     }
 
     public ScaleTestCaseCreationPayload createTestCasePayload(JiraIssuesResponse
@@ -64,6 +72,14 @@ public class ScaleTestCasePayloadFacade {
             return textToFormat;
         }
 
+        if (wikiMarkupRenderer != null) {
+            var renderedLocally = wikiMarkupRenderer.render(textToFormat);
+            if (renderedLocally.isPresent()) {
+                return renderedLocally.get();
+            }
+            logger.debug("Description uses markup not supported locally, rendering it through Jira.");
+        }
+
         try {
             return jiraApi.convertJiraTextFormattingToHtml(textToFormat);
         } catch (IOException e) {
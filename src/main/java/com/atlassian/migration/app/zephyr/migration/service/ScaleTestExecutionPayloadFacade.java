@@ -8,11 +8,11 @@ import com.atlassian.migration.app.zephyr.scale.model.ScaleExecutionCustomFieldP
 import com.atlassian.migration.app.zephyr.squad.model.SquadExecutionItemParsedResponse;
 
 import java.io.IOException;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
-public class ScaleTestExecutionPayloadFacade implements Resettable {
+public class ScaleTestExecutionPayloadFacade {
 
     private static final String DEFAULT_NONE_USER = "None";
 
@@ -28,19 +28,12 @@ public class ScaleTestExecutionPayloadFacade implements Resettable {
             SQUAD_STATUS_UNEXECUTED, SCALE_EXEC_STATUS_NOT_EXECUTED
     );
 
-    private final Set<String> assignableUsers = new HashSet<>();
-    private final Set<String> unassignableUsers = new HashSet<>(Set.of(DEFAULT_NONE_USER));
+    private final Set<String> assignableUsers = ConcurrentHashMap.newKeySet();
+    private final Set<String> unassignableUsers = ConcurrentHashMap.newKeySet();
     private final JiraApi jiraApi;
 
     public ScaleTestExecutionPayloadFacade(JiraApi jiraApi) {
         this.jiraApi = jiraApi;
-    }
-
-    @Override
-    public void reset() {
-        assignableUsers.clear();
-
-        unassignableUsers.clear();
         unassignableUsers.add(DEFAULT_NONE_USER);
     }
 
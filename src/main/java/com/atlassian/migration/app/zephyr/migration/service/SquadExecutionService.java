@@ -0,0 +1,125 @@
+package com.atlassian.migration.app.zephyr.migration.service;
+
+import com.atlassian.migration.app.zephyr.squad.api.SquadApi;
+import com.atlassian.migration.app.zephyr.squad.model.SquadExecutionItemParsedResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hands out the Squad executions of the test cases of a project.
+ * <p>
+ * Per issue, every test case asks Squad for its own executions. In bulk, the executions of the whole project are
+ * searched through ZQL in large pages the first time they are needed and grouped by issue id, so test cases with
+ * few or no executions cost no request at all. Each test case's executions are dropped once handed out.
+ * <p>
+ * The search finds executions by the project of their cycle, so the executions of a test case in a cycle of another
+ * project are only handed out per issue, which stays the default.
+ */
+public class SquadExecutionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SquadExecutionService.class);
+
+    public static final int SEARCH_PAGE_SIZE = 1000;
+
+    private final SquadApi squadApi;
+    private final String projectKey;
+    private final ExtractionMode extractionMode;
+
+    private volatile Map<String, List<SquadExecutionItemParsedResponse>> executionsByIssueId;
+
+    public SquadExecutionService(SquadApi squadApi, String projectKey, ExtractionMode extractionMode) {
+        this.squadApi = squadApi;
+        this.projectKey = projectKey;
+        this.extractionMode = extractionMode;
+    }
+
+    public List<SquadExecutionItemParsedResponse> getExecutionsByIssueId(String issueId) throws IOException {
+        if (extractionMode == ExtractionMode.PER_ISSUE) {
+            return squadApi.fetchLatestExecutionByIssueId(issueId).executions();
+        }
+
+        var executions = projectExecutions().remove(issueId);
+        return executions != null ? executions : List.of();
+    }
+
+    //executions of issues that never came up, e.g. issues without a test case, are dropped with the project, and
+    //no search is made after that, the project is over
+    public synchronized void release() {
+        executionsByIssueId = new ConcurrentHashMap<>();
+    }
+
+    private Map<String, List<SquadExecutionItemParsedResponse>> projectExecutions() throws IOException {
+        if (executionsByIssueId == null) {
+            synchronized (this) {
+                if (executionsByIssueId == null) {
+                    executionsByIssueId = searchProjectExecutions();
+                }
+            }
+        }
+        return executionsByIssueId;
+    }
+
+    private Map<String, List<SquadExecutionItemParsedResponse>> searchProjectExecutions() throws IOException {
+        logger.info("Fetching all Squad executions of project " + projectKey + "...");
+        logger.warn("Executions of " + projectKey + " tests in cycles of other projects are not searched in "
+                + ExtractionMode.BULK + " extraction, use " + ExtractionMode.PER_ISSUE + " to migrate them.");
+
+        Map<String, List<SquadExecutionItemParsedResponse>> executions = new ConcurrentHashMap<>();
+        var offset = 0;
+
+        while (true) {
+            var page = squadApi.searchExecutionsByProject(projectKey, offset, SEARCH_PAGE_SIZE);
+
+            if (page.executions() == null || page.executions().isEmpty()) {
+                break;
+            }
+
+            for (var execution : page.executions()) {
+                executions.computeIfAbsent(execution.issueId(), issueId -> new ArrayList<>())
+                        .add(SquadApi.parseSearchedExecution(execution));
+            }
+
+            //the host may cap the page below what was asked for, so the next one starts after what came back
+            offset += page.executions().size();
+
+            if (offset >= page.totalCount()) {
+                break;
+            }
+        }
+
+        logger.info("Fetched " + offset + " Squad executions of " + executions.size() + " test cases.");
+
+        return executions;
+    }
+
+    public enum ExtractionMode {
+        PER_ISSUE("per-issue"),
+        BULK("bulk");
+
+        private final String modeName;
+
+        ExtractionMode(String modeName) {
+            this.modeName = modeName;
+        }
+
+        public static ExtractionMode getExtractionModeByName(String name) {
+            return Arrays.stream(values())
+                    .filter(mode -> mode.modeName.equalsIgnoreCase(name))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unsupported execution extraction: " + name
+                            + ", Supported values: " + Arrays.toString(values())));
+        }
+
+        @Override
+        public String toString() {
+            return modeName;
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package com.atlassian.migration.app.zephyr.migration.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process renderer for the common subset of Jira wiki markup: paragraphs, headings, bullet and numbered
+ * lists, tables, code and noformat blocks, links, horizontal rules and bold, italic, strikethrough, underline,
+ * superscript, subscript, citation and monospaced text.
+ * <p>
+ * Anything outside that subset (macros, images, mentions, attachments, emoticons, escapes, wiki links) makes
+ * {@link #render(String)} return an empty result, so the caller can fall back to Jira's own renderer.
+ */
+public class WikiMarkupRenderer {
+
+    private static final Pattern UNSUPPORTED_MARKUP = Pattern.compile(
+            "(?<!\\{)\\{(?!code[}:]|noformat[}:])[a-zA-Z]+[}:]" //macros other than code and noformat
+                    + "|![^!\\s][^!]*!"                        //images and embedded attachments
+                    + "|\\[[~^#]"                              //mentions, attachment and anchor links
+                    + "|\\\\[*_\\-+{}\\[\\]|!^~?]"             //escaped markup characters
+                    + "|\\([/xXiI!?yYnN*+\\-]\\)|\\(on\\)|\\(off\\)|\\(flag(off)?\\)" //icon emoticons
+                    + "|[:;][)(PpDd](?!\\w)"                   //smiley emoticons
+                    + "|^bq\\.|^\\s*(\\*+#|#+\\*)[*#]*\\s",     //quotes and lists mixing bullets and numbers
+            Pattern.MULTILINE);
+
+    private static final Pattern HEADING = Pattern.compile("^h([1-6])\\.\\s+(.*)$");
+    private static final Pattern LIST_ITEM = Pattern.compile("^\\s*([*#]+|-)\\s+(.*)$");
+    private static final Pattern HORIZONTAL_RULE = Pattern.compile("^-{4,}\\s*$");
+    private static final Pattern BLOCK_START = Pattern.compile("^\\{(code|noformat)(:[^}]*)?}(.*)$");
+
+    private static final Pattern LINK = Pattern.compile("\\[(?:([^\\]|]*)\\|)?((?:https?|ftp|mailto):[^\\]|\\s]+)]");
+    private static final Pattern BARE_URL = Pattern.compile("(?<![\\w\"'=])(?:https?|ftp)://[^\\s<\\[\\]|]+");
+    private static final Pattern WIKI_LINK = Pattern.compile("\\[[^\\]]*]");
+    private static final Pattern MONOSPACED = Pattern.compile("\\{\\{(.+?)}}");
+
+    private static final List<InlineFormat> INLINE_FORMATS = List.of(
+            new InlineFormat("*", "b"),
+            new InlineFormat("_", "em"),
+            new InlineFormat("-", "del"),
+            new InlineFormat("+", "ins"),
+            new InlineFormat("^", "sup"),
+            new InlineFormat("~", "sub"),
+            new InlineFormat("??", "cite")
+    );
+
+    //marks text already turned into HTML, so the remaining inline formats don't touch it
+    private static final char PLACEHOLDER = '\u0000';
+
+    public Optional<String> render(String wikiText) {
+        if (wikiText == null) {
+            return Optional.empty();
+        }
+
+        var text = wikiText.replace("\r\n", "\n").replace('\r', '\n');
+
+        if (text.indexOf(PLACEHOLDER) >= 0 || UNSUPPORTED_MARKUP.matcher(text).find()) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.of(renderBlocks(text.split("\n", -1)));
+        } catch (UnsupportedMarkupException e) {
+            return Optional.empty();
+        }
+    }
+
+    private String renderBlocks(String[] lines) {
+        var html = new StringBuilder();
+        var paragraph = new ArrayList<String>();
+        var openLists = new ArrayDeque<String>();
+
+        for (int i = 0; i < lines.length; i++) {
+            var line = lines[i];
+
+            var blockStart = BLOCK_START.matcher(line);
+            var heading = HEADING.matcher(line);
+            var listItem = LIST_ITEM.matcher(line);
+
+            if (!listItem.matches()) {
+                closeLists(html, openLists, 0);
+            }
+
+            if (blockStart.matches()) {
+                closeParagraph(html, paragraph);
+                i = renderPreformatted(html, lines, i, blockStart);
+            } else if (line.isBlank()) {
+                closeParagraph(html, paragraph);
+            } else if (heading.matches()) {
+                closeParagraph(html, paragraph);
+                html.append("<h").append(heading.group(1)).append('>')
+                        .append(renderInline(heading.group(2).trim()))
+                        .append("</h").append(heading.group(1)).append('>');
+            } else if (HORIZONTAL_RULE.matcher(line).matches()) {
+                closeParagraph(html, paragraph);
+                html.append("<hr/>");
+            } else if (listItem.matches()) {
+                closeParagraph(html, paragraph);
+                renderListItem(html, openLists, listItem.group(1), listItem.group(2));
+            } else if (line.startsWith("|")) {
+                closeParagraph(html, paragraph);
+                i = renderTable(html, lines, i);
+            } else {
+                paragraph.add(line);
+            }
+        }
+
+        closeLists(html, openLists, 0);
+        closeParagraph(html, paragraph);
+
+        return html.toString();
+    }
+
+    private void closeParagraph(StringBuilder html, List<String> paragraph) {
+        if (paragraph.isEmpty()) {
+            return;
+        }
+
+        html.append("<p>");
+        for (int i = 0; i < paragraph.size(); i++) {
+            if (i > 0) {
+                html.append("<br/>\n");
+            }
+            html.append(renderInline(paragraph.get(i)));
+        }
+        html.append("</p>");
+
+        paragraph.clear();
+    }
+
+    private int renderPreformatted(StringBuilder html, String[] lines, int start, Matcher blockStart) {
+        var closingTag = "{" + blockStart.group(1) + "}";
+        var content = new ArrayList<String>();
+
+        var line = blockStart.group(3);
+        for (int i = start; i < lines.length; i++) {
+            if (i > start) {
+                line = lines[i];
+            }
+
+            var closingIndex = line.indexOf(closingTag);
+            if (closingIndex >= 0) {
+                content.add(line.substring(0, closingIndex));
+                html.append(preformatted(String.join("\n", content).strip()));
+                return i;
+            }
+
+            content.add(line);
+        }
+
+        //a block that is never closed is left for Jira to make sense of
+        throw new UnsupportedMarkupException();
+    }
+
+    private String preformatted(String content) {
+        return "<pre>" + escapeHtml(content) + "</pre>";
+    }
+
+    private void renderListItem(StringBuilder html, Deque<String> openLists, String marker, String content) {
+        var listTag = marker.charAt(0) == '#' ? "ol" : "ul";
+        var depth = marker.length();
+
+        closeLists(html, openLists, depth);
+
+        //a list of another type at the same depth starts a new list
+        if (openLists.size() == depth && !openLists.peek().equals(listTag)) {
+            closeLists(html, openLists, depth - 1);
+        }
+
+        //the previous item of the same list is only closed now, so the lists nested in it stay inside it
+        if (openLists.size() == depth) {
+            html.append("</li>");
+        }
+
+        while (openLists.size() < depth) {
+            html.append('<').append(listTag).append('>');
+            openLists.push(listTag);
+
+            //a depth the markup skips still needs an item for the deeper list to nest in
+            if (openLists.size() < depth) {
+                html.append("<li>");
+            }
+        }
+
+        html.append("<li>").append(renderInline(content));
+    }
+
+    //every open list has an item left open, closed along with it
+    private void closeLists(StringBuilder html, Deque<String> openLists, int depth) {
+        while (openLists.size() > depth) {
+            html.append("</li></").append(openLists.pop()).append('>');
+        }
+    }
+
+    private int renderTable(StringBuilder html, String[] lines, int start) {
+        html.append("<table><tbody>");
+
+        var i = start;
+        for (; i < lines.length && lines[i].startsWith("|"); i++) {
+            html.append("<tr>");
+            for (var cell : splitCells(lines[i].stripTrailing())) {
+                var cellTag = cell.header() ? "th" : "td";
+                html.append('<').append(cellTag).append('>')
+                        .append(renderInline(cell.content().trim()))
+                        .append("</").append(cellTag).append('>');
+            }
+            html.append("</tr>");
+        }
+
+        html.append("</tbody></table>");
+        return i - 1;
+    }
+
+    private List<TableCell> splitCells(String row) {
+        var cells = new ArrayList<TableCell>();
+        var content = new StringBuilder();
+        var header = false;
+        var linkDepth = 0;
+
+        for (int i = 0; i < row.length(); i++) {
+            var current = row.charAt(i);
+
+            if (current == '[') {
+                linkDepth++;
+            } else if (current == ']' && linkDepth > 0) {
+                linkDepth--;
+            }
+
+            if (current != '|' || linkDepth > 0) {
+                content.append(current);
+                continue;
+            }
+
+            if (i > 0) {
+                cells.add(new TableCell(header, content.toString()));
+                content.setLength(0);
+            }
+
+            header = i + 1 < row.length() && row.charAt(i + 1) == '|';
+            if (header) {
+                i++;
+            }
+        }
+
+        if (!content.toString().isBlank()) {
+            cells.add(new TableCell(header, content.toString()));
+        }
+
+        return cells;
+    }
+
+    private String renderInline(String text) {
+        var rendered = new ArrayList<String>();
+
+        //monospaced text and links are rendered first and set aside, so their content isn't formatted again
+        var inline = replaceWithPlaceholders(text, MONOSPACED, rendered,
+                monospaced -> "<tt>" + escapeHtml(monospaced.group(1)) + "</tt>");
+
+        inline = replaceWithPlaceholders(inline, LINK, rendered, link -> {
+            var url = link.group(2);
+            var label = link.group(1) == null || link.group(1).isBlank() ? url : link.group(1);
+            return "<a href=\"" + escapeHtml(url) + "\">" + escapeHtml(label) + "</a>";
+        });
+
+        if (WIKI_LINK.matcher(inline).find()) {
+            throw new UnsupportedMarkupException();
+        }
+
+        inline = replaceWithPlaceholders(inline, BARE_URL, rendered, url ->
+                "<a href=\"" + escapeHtml(url.group()) + "\">" + escapeHtml(url.group()) + "</a>");
+
+        inline = escapeHtml(inline).replace("\\\\", "<br/>");
+
+        for (var format : INLINE_FORMATS) {
+            inline = format.apply(inline);
+        }
+
+        return restorePlaceholders(inline, rendered);
+    }
+
+    private String replaceWithPlaceholders(String text, Pattern pattern, List<String> rendered,
+                                           Function<Matcher, String> renderer) {
+        var matcher = pattern.matcher(text);
+        var replaced = new StringBuilder();
+
+        while (matcher.find()) {
+            rendered.add(renderer.apply(matcher));
+            matcher.appendReplacement(replaced, Matcher.quoteReplacement(
+                    PLACEHOLDER + String.valueOf(rendered.size() - 1) + PLACEHOLDER));
+        }
+        matcher.appendTail(replaced);
+
+        return replaced.toString();
+    }
+
+    private String restorePlaceholders(String text, List<String> rendered) {
+        var restored = new StringBuilder();
+        var parts = text.split(String.valueOf(PLACEHOLDER), -1);
+
+        //placeholders always come in pairs, so every odd part is the index of a rendered piece
+        for (int i = 0; i < parts.length; i++) {
+            restored.append(i % 2 == 0 ? parts[i] : rendered.get(Integer.parseInt(parts[i])));
+        }
+
+        return restored.toString();
+    }
+
+    private static String escapeHtml(String text) {
+        return text.replace("&", "&amp;")
+                .replace("<", "&lt;")
+                .replace(">", "&gt;")
+                .replace("\"", "&quot;");
+    }
+
+    private record TableCell(boolean header, String content) {
+    }
+
+    private record InlineFormat(Pattern pattern, String tag) {
+
+        InlineFormat(String marker, String tag) {
+            this(Pattern.compile(String.format("(?<![\\w%2$s])%1$s(\\S|\\S.*?\\S)%1$s(?![\\w%2$s])",
+                    Pattern.quote(marker), "\\" + marker.charAt(0))), tag);
+        }
+
+        String apply(String text) {
+            return pattern.matcher(text).replaceAll(match ->
+                    Matcher.quoteReplacement("<" + tag + ">" + match.group(1) + "</" + tag + ">"));
+        }
+    }
+
+    private static class UnsupportedMarkupException extends RuntimeException {
+    }
+
+    public enum RendererMode {
+        REMOTE("remote"),
+        LOCAL("local");
+
+        private final String modeName;
+
+        RendererMode(String modeName) {
+            this.modeName = modeName;
+        }
+
+        public static RendererMode getRendererModeByName(String name) {
+            return Arrays.stream(values())
+                    .filter(mode -> mode.modeName.equalsIgnoreCase(name))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unsupported wiki renderer: " + name
+                            + ", Supported values: " + Arrays.toString(values())));
+        }
+
+        @Override
+        public String toString() {
+            return modeName;
+        }
+    }
+}
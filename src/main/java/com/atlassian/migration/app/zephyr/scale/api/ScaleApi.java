@@ -15,6 +15,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class ScaleApi extends BaseApi {
 
@@ -61,6 +63,11 @@ public class ScaleApi extends BaseApi {
         }
     }
 
+    public CompletableFuture<Void> updateTestStepAsync(String key, SquadUpdateStepPayload step) {
+        return ScaleApiErrorLogger.logAndFailOnError(String.format(ScaleApiErrorLogger.ERROR_CREATE_TEST_STEP, key),
+                sendHttpPutAsync(String.format(SCALE_TEST_STEP_ENDPOINT, key), step));
+    }
+
     public ScaleGETStepsPayload fetchTestStepsFromTestCaseKey(String key) throws ZephyrApiException {
 
         try {
@@ -168,5 +175,19 @@ public class ScaleApi extends BaseApi {
             throw new ZephyrApiException(e);
         }
 
+        public static <T> CompletableFuture<T> logAndFailOnError(String message, CompletableFuture<T> request) {
+            return request.exceptionallyCompose(error -> {
+                var cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+
+                var apiException = cause instanceof ApiException e
+                        ? e
+                        : new ApiException(cause instanceof Exception exception ? exception : new Exception(cause));
+
+                logger.error(message + " " + apiException.getMessage(), apiException);
+
+                return CompletableFuture.failedFuture(new ZephyrApiException(apiException));
+            });
+        }
+
     }
 }
@@ -0,0 +1,191 @@
+package com.atlassian.migration.app.zephyr.scale.database;
+
+import com.atlassian.migration.app.zephyr.common.DatabaseType;
+import com.atlassian.migration.app.zephyr.common.DatabaseUtils;
+import com.atlassian.migration.app.zephyr.migration.model.AttachmentAssociationData;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Inserts the mapped attachments straight into the Scale attachment table, the same rows the CSV export holds.
+ * The ID column is left to the table's own sequence or identity, as when the CSV is imported.
+ */
+public class ScaleAttachmentRepository {
+
+    private static final String TABLE_NAME = "AO_4D28DD_ATTACHMENT";
+
+    private static final List<String> COLUMNS = List.of("FILE_NAME", "FILE_SIZE", "NAME", "PROJECT_ID", "USER_KEY",
+            "TEMPORARY", "CREATED_ON", "MIME_TYPE", "TEST_CASE_ID", "STEP_ID", "TEST_RESULT_ID");
+
+    private static final int TEMPORARY_COLUMN = COLUMNS.indexOf("TEMPORARY");
+
+    //Active Objects maps its boolean columns to whatever each database has, Oracle has no boolean column at all
+    private static final Map<DatabaseType, Integer> TEMPORARY_COLUMN_TYPES = Map.of(
+            DatabaseType.POSTGRESQL, Types.BOOLEAN,
+            DatabaseType.SQLSERVER, Types.BIT,
+            DatabaseType.MSSQL, Types.BIT,
+            DatabaseType.ORACLE, Types.INTEGER,
+            DatabaseType.MYSQL, Types.BIT
+    );
+
+    private static final String INSERT = "INSERT INTO %s\"" + TABLE_NAME + "\" (%s) VALUES (%s)";
+    private static final String INSERT_MSSQL = "INSERT INTO %s" + TABLE_NAME + " (%s) VALUES (%s)";
+    private static final String INSERT_MYSQL = "INSERT INTO %s`" + TABLE_NAME + "` (%s) VALUES (%s)";
+
+    //the file and the entity it is attached to identify a row, the ID column is only the table's own
+    private static final List<String> KEY_COLUMNS = List.of("FILE_NAME", "TEST_CASE_ID", "STEP_ID", "TEST_RESULT_ID");
+
+    private static final String SELECT_EXISTING = "SELECT %s FROM %s\"" + TABLE_NAME + "\" WHERE %s IN (%%s)";
+    private static final String SELECT_EXISTING_MSSQL = "SELECT %s FROM %s" + TABLE_NAME + " WHERE %s IN (%%s)";
+    private static final String SELECT_EXISTING_MYSQL = "SELECT %s FROM %s`" + TABLE_NAME + "` WHERE %s IN (%%s)";
+
+    //rows sent per JDBC batch
+    public static final int INSERT_BATCH_SIZE = 500;
+
+    private final Map<DatabaseType, String> insertQueries = Map.of(
+            DatabaseType.POSTGRESQL, INSERT,
+            DatabaseType.SQLSERVER, INSERT_MSSQL,
+            DatabaseType.MSSQL, INSERT_MSSQL,
+            DatabaseType.ORACLE, INSERT,
+            DatabaseType.MYSQL, INSERT_MYSQL
+    );
+
+    private final Map<DatabaseType, String> selectExistingQueries = Map.of(
+            DatabaseType.POSTGRESQL, SELECT_EXISTING,
+            DatabaseType.SQLSERVER, SELECT_EXISTING_MSSQL,
+            DatabaseType.MSSQL, SELECT_EXISTING_MSSQL,
+            DatabaseType.ORACLE, SELECT_EXISTING,
+            DatabaseType.MYSQL, SELECT_EXISTING_MYSQL
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final DatabaseType databaseType;
+    private final String insertQuery;
+    private final String selectExistingQuery;
+    private final int[] columnTypes;
+
+    public ScaleAttachmentRepository(DataSource datasource) {
+
+        jdbcTemplate = new JdbcTemplate(datasource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(datasource));
+
+        databaseType = DatabaseUtils.defineDatabaseType(datasource);
+        var schemaPrefix = buildSchemaPrefix(datasource);
+        insertQuery = String.format(insertQueries.getOrDefault(databaseType, INSERT), schemaPrefix,
+                quotedColumns(COLUMNS), COLUMNS.stream().map(column -> "?").collect(Collectors.joining(", ")));
+        selectExistingQuery = String.format(selectExistingQueries.getOrDefault(databaseType, SELECT_EXISTING),
+                quotedColumns(KEY_COLUMNS), schemaPrefix, quotedColumns(List.of("FILE_NAME")));
+        columnTypes = new int[]{Types.VARCHAR, Types.BIGINT, Types.VARCHAR, Types.BIGINT, Types.VARCHAR,
+                TEMPORARY_COLUMN_TYPES.getOrDefault(databaseType, Types.BOOLEAN), Types.TIMESTAMP, Types.VARCHAR,
+                Types.BIGINT, Types.BIGINT, Types.BIGINT};
+    }
+
+    /**
+     * Inserts all the given attachments in a single transaction, INSERT_BATCH_SIZE rows per JDBC batch. Either all
+     * of them are inserted or none is, and rows already in the table for the same file and entity are skipped, so a
+     * page can be migrated again without duplicating rows, even when it was committed before the journal recorded it.
+     */
+    public void insertAll(List<AttachmentAssociationData> attachments) {
+
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int start = 0; start < attachments.size(); start += INSERT_BATCH_SIZE) {
+                var batch = attachments.subList(start, Math.min(start + INSERT_BATCH_SIZE, attachments.size()));
+                var existingKeys = existingKeys(batch);
+
+                var batchArgs = batch.stream()
+                        .map(this::toRow)
+                        .filter(row -> !existingKeys.contains(AttachmentKey.fromRow(row)))
+                        .toList();
+
+                if (!batchArgs.isEmpty()) {
+                    jdbcTemplate.batchUpdate(insertQuery, batchArgs, columnTypes);
+                }
+            }
+        });
+    }
+
+    private Set<AttachmentKey> existingKeys(List<AttachmentAssociationData> batch) {
+        var fileNames = batch.stream().map(AttachmentAssociationData::getFileName).distinct().toList();
+        var query = String.format(selectExistingQuery,
+                fileNames.stream().map(fileName -> "?").collect(Collectors.joining(", ")));
+
+        return new HashSet<>(jdbcTemplate.query(query, (resultSet, rowNum) -> new AttachmentKey(
+                resultSet.getString(1),
+                nullableLong(resultSet, 2),
+                nullableLong(resultSet, 3),
+                nullableLong(resultSet, 4)), fileNames.toArray()));
+    }
+
+    private static Long nullableLong(ResultSet resultSet, int column) throws SQLException {
+        var value = resultSet.getLong(column);
+        return resultSet.wasNull() ? null : value;
+    }
+
+    private record AttachmentKey(String fileName, Long testCaseId, Long stepId, Long testResultId) {
+
+        private static AttachmentKey fromRow(Object[] row) {
+            return new AttachmentKey((String) row[COLUMNS.indexOf("FILE_NAME")],
+                    (Long) row[COLUMNS.indexOf("TEST_CASE_ID")],
+                    (Long) row[COLUMNS.indexOf("STEP_ID")],
+                    (Long) row[COLUMNS.indexOf("TEST_RESULT_ID")]);
+        }
+    }
+
+    //the mapping keeps every value as text for the CSV, the table wants them typed
+    private Object[] toRow(AttachmentAssociationData attachment) {
+        var row = new Object[]{
+                attachment.getFileName(),
+                toLong(attachment.getSize()),
+                attachment.getAttachmentName(),
+                toLong(attachment.getProjectId()),
+                attachment.getAuthorKey(),
+                attachment.getTemporary(),
+                attachment.getCreatedOn() == null ? null : Timestamp.valueOf(LocalDateTime.parse(attachment.getCreatedOn())),
+                attachment.getMimeType(),
+                toLong(attachment.getTestCaseId()),
+                toLong(attachment.getStepId()),
+                toLong(attachment.getTestResultId())
+        };
+
+        if (databaseType == DatabaseType.ORACLE && row[TEMPORARY_COLUMN] != null) {
+            row[TEMPORARY_COLUMN] = Boolean.TRUE.equals(row[TEMPORARY_COLUMN]) ? 1 : 0;
+        }
+
+        return row;
+    }
+
+    private static Long toLong(String value) {
+        return value == null || value.isBlank() ? null : Long.valueOf(value.trim());
+    }
+
+    private String quotedColumns(List<String> columns) {
+        var quote = databaseType == DatabaseType.MYSQL ? "`" : "\"";
+
+        return columns.stream().map(column -> quote + column + quote).collect(Collectors.joining(", "));
+    }
+
+    private String buildSchemaPrefix(DataSource datasource) {
+        if (databaseType != DatabaseType.SQLSERVER && databaseType != DatabaseType.MSSQL) {
+            return "";
+        }
+
+        var schema = DatabaseUtils.getSchema(datasource);
+
+        return schema != null && !schema.isBlank() ? schema + "." : "";
+    }
+}
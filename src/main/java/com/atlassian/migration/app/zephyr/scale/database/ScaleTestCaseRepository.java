@@ -5,13 +5,19 @@ import com.atlassian.migration.app.zephyr.common.DatabaseUtils;
 import com.atlassian.migration.app.zephyr.scale.model.TestCaseEntity;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
 
+import javax.sql.DataSource;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 public class ScaleTestCaseRepository {
@@ -19,50 +25,115 @@ public class ScaleTestCaseRepository {
     private final JdbcTemplate jdbcTemplate;
 
     private static final String TABLE_NAME = "AO_4D28DD_TEST_CASE";
-    private static final String FETCH_BY_KEY = "SELECT \"ID\", \"KEY\" FROM \"" + TABLE_NAME + "\" WHERE \"KEY\" = '%s'";
-    private static final String FETCH_BY_KEY_MSSQL = "SELECT \"ID\", \"KEY\" FROM %s" + TABLE_NAME + " WHERE \"KEY\" = '%s'";
-    private static final String FETCH_BY_KEY_MYSQL = "SELECT `ID`, `KEY` FROM `" + TABLE_NAME + "` WHERE `KEY` = '%s'";
+    private static final String FETCH_BY_KEY = "SELECT \"ID\", \"KEY\" FROM %s\"" + TABLE_NAME + "\" WHERE \"KEY\" = ?";
+    private static final String FETCH_BY_KEY_MSSQL = "SELECT \"ID\", \"KEY\" FROM %s" + TABLE_NAME + " WHERE \"KEY\" = ?";
+    private static final String FETCH_BY_KEY_MYSQL = "SELECT `ID`, `KEY` FROM %s`" + TABLE_NAME + "` WHERE `KEY` = ?";
+
+    private static final String FETCH_BY_KEYS = "SELECT \"ID\", \"KEY\" FROM %s\"" + TABLE_NAME + "\" WHERE \"KEY\" IN (%s)";
+    private static final String FETCH_BY_KEYS_MSSQL = "SELECT \"ID\", \"KEY\" FROM %s" + TABLE_NAME + " WHERE \"KEY\" IN (%s)";
+    private static final String FETCH_BY_KEYS_MYSQL = "SELECT `ID`, `KEY` FROM %s`" + TABLE_NAME + "` WHERE `KEY` IN (%s)";
+
+    //Oracle doesn't accept more than 1000 expressions in an IN list
+    public static final int MAX_KEYS_PER_QUERY = 1000;
+
+    private static final RowMapper<TestCaseEntity> TEST_CASE_MAPPER = new TestCaseMapper();
+
+    private final Map<DatabaseType, String> fetchByKeysQueries = Map.of(
+            DatabaseType.POSTGRESQL, FETCH_BY_KEYS,
+            DatabaseType.SQLSERVER, FETCH_BY_KEYS_MSSQL,
+            DatabaseType.MSSQL, FETCH_BY_KEYS_MSSQL,
+            DatabaseType.ORACLE, FETCH_BY_KEYS,
+            DatabaseType.MYSQL, FETCH_BY_KEYS_MYSQL
+    );
 
     private final Map<DatabaseType, String> fetchByKeyQueries = Map.of(
             DatabaseType.POSTGRESQL, FETCH_BY_KEY,
             DatabaseType.SQLSERVER, FETCH_BY_KEY_MSSQL,
+            DatabaseType.MSSQL, FETCH_BY_KEY_MSSQL,
             DatabaseType.ORACLE, FETCH_BY_KEY,
             DatabaseType.MYSQL, FETCH_BY_KEY_MYSQL
     );
 
-    public ScaleTestCaseRepository(DriverManagerDataSource datasource) {
+    //the dialect and schema never change for a data source, so the statements are only built once
+    private final DatabaseType databaseType;
+    private final String schemaPrefix;
+    private final String fetchByKeyQuery;
+    private final Map<Integer, String> fetchByKeysQueryBySize = new ConcurrentHashMap<>();
+
+    public ScaleTestCaseRepository(DataSource datasource) {
 
         jdbcTemplate = new JdbcTemplate(datasource);
+
+        databaseType = DatabaseUtils.defineDatabaseType(datasource);
+        schemaPrefix = buildSchemaPrefix(datasource);
+        fetchByKeyQuery = String.format(fetchByKeyQueries.getOrDefault(databaseType, FETCH_BY_KEY), schemaPrefix);
     }
 
     public Optional<TestCaseEntity> getByKey(String key) {
 
-        String sql_stmt = buildGetByKeyQuery(key);
-
-        List<TestCaseEntity> result = jdbcTemplate.query(sql_stmt, new TestCaseMapper());
+        List<TestCaseEntity> result = jdbcTemplate.query(fetchByKeyQuery, TEST_CASE_MAPPER, key);
 
         return result.stream().findFirst();
     }
 
-    private String buildGetByKeyQuery(String key) {
-        DriverManagerDataSource datasource = (DriverManagerDataSource) jdbcTemplate.getDataSource();
+    /**
+     * Resolves the ids of all the given test case keys, in as few queries as the IN list limit allows.
+     * Keys that don't exist in Scale are left out of the returned map.
+     */
+    public Map<String, Long> getByKeys(Collection<String> keys) {
+
+        var distinctKeys = new ArrayList<>(new LinkedHashSet<>(keys));
+        Map<String, Long> idsByKey = new HashMap<>();
+
+        for (int start = 0; start < distinctKeys.size(); start += MAX_KEYS_PER_QUERY) {
+            var chunk = distinctKeys.subList(start, Math.min(start + MAX_KEYS_PER_QUERY, distinctKeys.size()));
 
-        var databaseType = DatabaseUtils.defineDatabaseType(datasource);
+            List<TestCaseEntity> result = jdbcTemplate.query(getByKeysQuery(chunk.size()), TEST_CASE_MAPPER,
+                    padToBindCount(chunk));
 
-        String sql_stmt = fetchByKeyQueries.getOrDefault(databaseType, FETCH_BY_KEY);
+            result.forEach(testCase -> idsByKey.put(testCase.key(), testCase.id()));
+        }
+
+        return idsByKey;
+    }
 
-        switch (databaseType) {
-            case SQLSERVER, MSSQL: {
-                if (datasource.getSchema() == null
-                        || datasource.getSchema().isBlank()) {
-                    return String.format(sql_stmt, "", key);
-                }
-                return String.format(sql_stmt,
-                        datasource.getSchema() + ".", key);
-            }
-            default:
-                return String.format(sql_stmt, key);
+    /**
+     * IN lists are rounded up to the next power of two, so a handful of statement texts cover every page size
+     * and the database can reuse their plans instead of parsing a new statement for every list length.
+     */
+    static int bindCount(int numberOfKeys) {
+        var rounded = Integer.highestOneBit(Math.max(1, numberOfKeys));
+        if (rounded < numberOfKeys) {
+            rounded <<= 1;
         }
+        return Math.min(rounded, MAX_KEYS_PER_QUERY);
+    }
+
+    private Object[] padToBindCount(List<String> chunk) {
+        var binds = new Object[bindCount(chunk.size())];
+
+        //the extra binds repeat the last key, which doesn't change the result
+        for (int i = 0; i < binds.length; i++) {
+            binds[i] = chunk.get(Math.min(i, chunk.size() - 1));
+        }
+
+        return binds;
+    }
+
+    private String getByKeysQuery(int numberOfKeys) {
+        return fetchByKeysQueryBySize.computeIfAbsent(bindCount(numberOfKeys), size ->
+                String.format(fetchByKeysQueries.getOrDefault(databaseType, FETCH_BY_KEYS), schemaPrefix,
+                        String.join(", ", Collections.nCopies(size, "?"))));
+    }
+
+    private String buildSchemaPrefix(DataSource datasource) {
+        if (databaseType != DatabaseType.SQLSERVER && databaseType != DatabaseType.MSSQL) {
+            return "";
+        }
+
+        var schema = DatabaseUtils.getSchema(datasource);
+
+        return schema != null && !schema.isBlank() ? schema + "." : "";
     }
 
     private static class TestCaseMapper implements RowMapper<TestCaseEntity> {
@@ -6,7 +6,9 @@ import com.atlassian.migration.app.zephyr.common.BaseApi;
 import com.atlassian.migration.app.zephyr.scale.model.GetAllProjectsResponse;
 import com.atlassian.migration.app.zephyr.squad.model.*;
 
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -15,6 +17,7 @@ public class SquadApi extends BaseApi {
     public static final String FETCH_SQUAD_TEST_STEP_ENDPOINT = "/rest/zapi/latest/teststep/%s";
     public static final String FETCH_SQUAD_EXECUTION_ENDPOINT = "/rest/zapi/latest/execution?issueId=%s";
     public static final String FETCH_ATTACHMENT_ENDPOINT = "/rest/zapi/latest/attachment/attachmentsByEntity?entityId=%s&entityType=%s";
+    public static final String SEARCH_SQUAD_EXECUTIONS_ENDPOINT = "/rest/zapi/latest/zql/executeSearch";
     public static final String GET_ALL_PROJECTS_ENDPOINT = "/rest/zapi/latest/util/project-list";
     public static final String ENTITY_TYPE_TEST_EXECUTION = "execution";
     public static final String ENTITY_TYPE_TEST_STEP = "teststep";
@@ -42,15 +45,26 @@ public class SquadApi extends BaseApi {
 
     public FetchSquadTestStepResponse fetchLatestTestStepByTestCaseId(String testCaseId) throws ApiException {
 
-        var response = sendHttpGet(getUri(urlPath(FETCH_SQUAD_TEST_STEP_ENDPOINT, testCaseId)));
-        return gson.fromJson(response, FetchSquadTestStepResponse.class);
+        return sendHttpGet(getUri(urlPath(FETCH_SQUAD_TEST_STEP_ENDPOINT, testCaseId)), FetchSquadTestStepResponse.class);
+    }
+
+    public CompletableFuture<FetchSquadTestStepResponse> fetchLatestTestStepByTestCaseIdAsync(String testCaseId) {
+        try {
+            return sendHttpGetAsync(getUri(urlPath(FETCH_SQUAD_TEST_STEP_ENDPOINT, testCaseId)),
+                    FetchSquadTestStepResponse.class);
+        } catch (ApiException e) {
+            return CompletableFuture.failedFuture(e);
+        }
     }
 
     public FetchSquadExecutionParsedResponse fetchLatestExecutionByIssueId(String issueId) throws ApiException {
 
-        var response = sendHttpGet(getUri(urlPath(FETCH_SQUAD_EXECUTION_ENDPOINT, issueId)));
-        var data = gson.fromJson(response, FetchSquadExecutionResponse.class);
+        FetchSquadExecutionResponse response = sendHttpGet(getUri(urlPath(FETCH_SQUAD_EXECUTION_ENDPOINT, issueId)),
+                FetchSquadExecutionResponse.class);
+        return toParsedExecutions(response);
+    }
 
+    private FetchSquadExecutionParsedResponse toParsedExecutions(FetchSquadExecutionResponse data) {
         var executions = data.executions().stream()
                 .map(e -> new SquadExecutionItemParsedResponse(
                         e.id(),
@@ -76,6 +90,37 @@ public class SquadApi extends BaseApi {
                 executions);
     }
 
+    /**
+     * Searches the executions of every test of the project through ZQL, maxRecords at a time from offset, so a
+     * whole project is read in a few requests instead of one per test. ZQL matches the project of the execution's
+     * cycle, executions of the project's tests in cycles of other projects are not found.
+     */
+    public SquadExecutionSearchResponse searchExecutionsByProject(String projectKey, int offset, int maxRecords)
+            throws ApiException {
+        Map<String, Object> params = new HashMap<>();
+        params.put("zqlQuery", String.format("project = \"%s\"", projectKey));
+        params.put("offset", offset);
+        params.put("maxRecords", maxRecords);
+
+        return sendHttpGet(uri(SEARCH_SQUAD_EXECUTIONS_ENDPOINT, params), SquadExecutionSearchResponse.class);
+    }
+
+    public static SquadExecutionItemParsedResponse parseSearchedExecution(SquadExecutionSearchItemResponse e) {
+        return new SquadExecutionItemParsedResponse(
+                e.id(),
+                EXECUTION_TYPES.get(Integer.parseInt(e.status().id())),
+                e.createdBy(),
+                e.createdByUserName(),
+                e.versionName(),
+                e.htmlComment(),
+                e.executedOn(),
+                e.assignedTo(),
+                e.assignedToDisplay(),
+                e.assignedToUserName(),
+                e.cycleName(),
+                e.folderName());
+    }
+
     public FetchSquadAttachmentResponse fetchTestExecutionAttachmentById(String testExecutionId) throws ApiException {
         return fetchAttachmentByEntityType(testExecutionId, ENTITY_TYPE_TEST_EXECUTION);
     }
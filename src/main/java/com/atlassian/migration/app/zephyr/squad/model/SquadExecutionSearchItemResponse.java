@@ -0,0 +1,18 @@
+package com.atlassian.migration.app.zephyr.squad.model;
+
+//an execution as returned by the ZQL search, which names a few fields differently than the per-issue endpoint
+public record SquadExecutionSearchItemResponse(
+        String id,
+        String issueId,
+        SquadExecutionStatusResponse status,
+        Object createdBy,
+        String createdByUserName,
+        String versionName,
+        String htmlComment,
+        String cycleName,
+        String folderName,
+        String executedOn,
+        String assignedTo,
+        String assignedToDisplay,
+        String assignedToUserName) {
+}
@@ -0,0 +1,9 @@
+package com.atlassian.migration.app.zephyr.squad.model;
+
+import java.util.List;
+
+public record SquadExecutionSearchResponse(
+        List<SquadExecutionSearchItemResponse> executions,
+        int totalCount,
+        int currentIndex,
+        int maxResultAllowed) { }
@@ -0,0 +1,70 @@
+package com.atlassian.migration.app.zephyr.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyControllerTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private static final long HEALTHY_LATENCY = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    void shouldRaiseLimitByOneAfterEveryHealthyWindow() {
+        var controller = new AdaptiveConcurrencyController(4, 6, true, clock::get);
+
+        respond(controller, 200, HEALTHY_LATENCY, AdaptiveConcurrencyController.MIN_WINDOW);
+        assertEquals(5, controller.limit());
+
+        respond(controller, 200, HEALTHY_LATENCY, 3 * AdaptiveConcurrencyController.MIN_WINDOW);
+        assertEquals(6, controller.limit());
+    }
+
+    @Test
+    void shouldHalveLimitOnceForABurstOfThrottledResponses() {
+        var controller = new AdaptiveConcurrencyController(16, 16, true, clock::get);
+
+        respond(controller, 429, HEALTHY_LATENCY, 10);
+        assertEquals(8, controller.limit());
+
+        //the requests sent before the first decrease have been answered, so the next throttle counts again
+        respond(controller, 503, HEALTHY_LATENCY, 10);
+        assertEquals(4, controller.limit());
+    }
+
+    @Test
+    void shouldLowerLimitWhenLatencyRises() {
+        var controller = new AdaptiveConcurrencyController(20, 20, true, clock::get);
+
+        respond(controller, 200, HEALTHY_LATENCY, 20);
+        respond(controller, 200, 3 * HEALTHY_LATENCY, 20);
+
+        assertEquals(18, controller.limit());
+        assertEquals(300, controller.p95LatencyMillis());
+    }
+
+    @Test
+    void shouldKeepFixedLimitAndHoldRequestsUntilRetryAfter() {
+        var controller = new AdaptiveConcurrencyController(2, 2, false, clock::get);
+
+        respond(controller, 429, HEALTHY_LATENCY, 5);
+        assertEquals(2, controller.limit());
+
+        controller.onRetryAfter(Duration.ofSeconds(30));
+        assertFalse(controller.acquire().isDone());
+
+        clock.addAndGet(Duration.ofSeconds(30).toNanos());
+        assertTrue(controller.acquire().isDone());
+    }
+
+    private void respond(AdaptiveConcurrencyController controller, int statusCode, long latencyNanos, int times) {
+        for (int i = 0; i < times; i++) {
+            controller.onResponse(statusCode, latencyNanos);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.atlassian.migration.app.zephyr.common;
 
+import org.apache.commons.dbcp2.BasicDataSource;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
@@ -8,6 +9,7 @@ import org.springframework.jdbc.datasource.DriverManagerDataSource;
 import java.io.IOException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.mockStatic;
 
@@ -140,5 +142,42 @@ class DataSourceFactoryTest {
         assertThrows(IOException.class, () -> dataSourceFactory.createDataSourceFromDatabaseName("unknown"));
     }
 
+    @Test
+    void isPooledDataSourceBeingCreatedWhenPoolIsEnabled() throws IOException {
+
+        try (MockedStatic<DataBaseConfigurationLoader> mocked = mockStatic(DataBaseConfigurationLoader.class)) {
+            mocked.when(DataBaseConfigurationLoader::loadPostgresDbConfig).thenReturn(new DataBaseConfigurationLoader(
+                    "jdbc:postgresql://localhost:5432/jira", "org.postgresql.Driver", "public", "user",
+                    "password"
+            ));
+
+            var createdDatasource = dataSourceFactory.createPooledDataSourceFromDatabaseName("postgresql",
+                    new DataSourcePoolConfiguration(2, 8, 25));
+
+            var pooledDataSource = assertInstanceOf(BasicDataSource.class, createdDatasource);
+
+            assertEquals("jdbc:postgresql://localhost:5432/jira", DatabaseUtils.getUrl(pooledDataSource));
+            assertEquals("public", DatabaseUtils.getSchema(pooledDataSource));
+            assertEquals(DatabaseType.POSTGRESQL, DatabaseUtils.defineDatabaseType(pooledDataSource));
+            assertEquals(8, pooledDataSource.getMaxTotal());
+            assertEquals(2, pooledDataSource.getMinIdle());
+            assertEquals(25, pooledDataSource.getMaxOpenPreparedStatements());
+        }
+    }
+
+    @Test
+    void isDriverManagerDataSourceBeingCreatedWhenPoolIsDisabled() throws IOException {
 
-}
\ No newline at end of file
+        try (MockedStatic<DataBaseConfigurationLoader> mocked = mockStatic(DataBaseConfigurationLoader.class)) {
+            mocked.when(DataBaseConfigurationLoader::loadOracleDbConfig).thenReturn(new DataBaseConfigurationLoader(
+                    "jdbc:oracle:thin:@localhost:1521:jira", "oracle.jdbc.OracleDriver", "", "user",
+                    "password"
+            ));
+
+            var createdDatasource = dataSourceFactory.createPooledDataSourceFromDatabaseName("oracle",
+                    DataSourcePoolConfiguration.disabled());
+
+            assertInstanceOf(DriverManagerDataSource.class, createdDatasource);
+        }
+    }
+}
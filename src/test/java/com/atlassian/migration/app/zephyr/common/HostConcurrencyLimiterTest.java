@@ -0,0 +1,66 @@
+package com.atlassian.migration.app.zephyr.common;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HostConcurrencyLimiterTest {
+
+    @Test
+    void shouldGrantPermitsImmediatelyWhileAvailable() {
+        var limiter = new HostConcurrencyLimiter(2);
+
+        assertTrue(limiter.acquire().isDone());
+        assertTrue(limiter.acquire().isDone());
+        assertEquals(0, limiter.availablePermits());
+    }
+
+    @Test
+    void shouldQueueRequestsOverTheLimitUntilAPermitIsReleased() {
+        var limiter = new HostConcurrencyLimiter(1);
+
+        limiter.acquire();
+        var waitingRequest = limiter.acquire();
+
+        assertFalse(waitingRequest.isDone());
+        assertEquals(1, limiter.waitingRequests());
+
+        limiter.release();
+
+        assertTrue(waitingRequest.isDone());
+        assertEquals(0, limiter.waitingRequests());
+        assertEquals(0, limiter.availablePermits());
+
+        limiter.release();
+
+        assertEquals(1, limiter.availablePermits());
+    }
+
+    @Test
+    void shouldHandPermitsToWaitingRequestsWhenLimitIsRaisedAndHoldThemWhenLowered() {
+        var limiter = new HostConcurrencyLimiter(1);
+
+        limiter.acquire();
+        var firstWaiting = limiter.acquire();
+        var secondWaiting = limiter.acquire();
+
+        limiter.setLimit(2);
+
+        assertTrue(firstWaiting.isDone());
+        assertFalse(secondWaiting.isDone());
+
+        limiter.setLimit(1);
+        limiter.release();
+
+        assertFalse(secondWaiting.isDone());
+
+        limiter.release();
+
+        assertTrue(secondWaiting.isDone());
+    }
+
+    @Test
+    void shouldRejectLimitsLowerThanOne() {
+        assertThrows(IllegalArgumentException.class, () -> new HostConcurrencyLimiter(0));
+    }
+}
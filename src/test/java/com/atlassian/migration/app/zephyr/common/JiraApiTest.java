@@ -4,22 +4,35 @@ import com.atlassian.migration.app.zephyr.jira.api.JiraApi;
 import com.atlassian.migration.app.zephyr.jira.model.*;
 import com.atlassian.migration.app.zephyr.scale.model.GetProjectResponse;
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.URI;
 import java.net.http.HttpClient;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 import java.util.zip.GZIPOutputStream;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -36,6 +49,12 @@ class JiraApiTest {
         jiraApiSpy = spy(new JiraApi(apiConfMock));
     }
 
+    //the stubbed body goes through the same streaming parse as a real response
+    private Answer<Object> streamedJson(String json) {
+        return invocation -> jiraApiSpy.decodeBody(new ByteArrayInputStream(json.getBytes(UTF_8)), "identity",
+                invocation.<Type>getArgument(1));
+    }
+
     @Nested
     class whenCreating {
 
@@ -122,14 +141,36 @@ class JiraApiTest {
         @Test
         void shouldGetTotalNumberOfIssues() throws IOException {
 
-            doReturn("{startAt:0,total:10}").when(jiraApiSpy)
-                    .sendHttpGet(any());
+            doAnswer(streamedJson("{startAt:0,total:10}")).when(jiraApiSpy)
+                    .sendHttpGet(any(), any());
 
             int totalIssues = jiraApiSpy.fetchTotalIssuesByProjectName("project");
 
             assertEquals(10, totalIssues);
         }
 
+        @Test
+        void shouldOnlyRequestTheCountWhenFetchingTotalIssues() throws IOException {
+
+            ArgumentCaptor<URI> uriCaptor = ArgumentCaptor.forClass(URI.class);
+            doAnswer(streamedJson("{startAt:0,total:10}")).when(jiraApiSpy).sendHttpGet(uriCaptor.capture(), any());
+
+            jiraApiSpy.fetchTotalIssuesByProjectName("project");
+
+            assertTrue(uriCaptor.getValue().getQuery().contains("maxResults=0"));
+        }
+
+        @Test
+        void shouldOnlyRequestMigratedFieldsWhenSearchingIssues() throws IOException {
+
+            ArgumentCaptor<URI> uriCaptor = ArgumentCaptor.forClass(URI.class);
+            doAnswer(streamedJson(RESPONSE_WITH_TWO_ISSUES_MOCK)).when(jiraApiSpy).sendHttpGet(uriCaptor.capture(), any());
+
+            jiraApiSpy.fetchIssuesOrderedByCreatedDate("project", 0, 100);
+
+            assertTrue(uriCaptor.getValue().getQuery().contains("fields=" + JiraApi.SEARCH_ISSUE_FIELDS));
+        }
+
         @Test
         void shouldGetIssueById() throws IOException {
 
@@ -168,7 +209,7 @@ class JiraApiTest {
 
             var issuesExpected = List.of(issueExpected_1, issueExpected_2);
 
-            doReturn(RESPONSE_WITH_TWO_ISSUES_MOCK).when(jiraApiSpy).sendHttpGet(any());
+            doAnswer(streamedJson(RESPONSE_WITH_TWO_ISSUES_MOCK)).when(jiraApiSpy).sendHttpGet(any(), any());
 
             var issuesFetched = jiraApiSpy.fetchIssuesOrderedByCreatedDate("project", 0, 100);
 
@@ -176,12 +217,69 @@ class JiraApiTest {
 
         }
 
+        @Test
+        void shouldGetIssuesAfterLastSeenIdOrderedById() throws IOException {
+
+            var issuesExpected = List.of(issueExpected_1, issueExpected_2);
+
+            ArgumentCaptor<URI> uriCaptor = ArgumentCaptor.forClass(URI.class);
+            doAnswer(streamedJson(RESPONSE_WITH_TWO_ISSUES_MOCK)).when(jiraApiSpy).sendHttpGet(uriCaptor.capture(), any());
+
+            var issuesFetched = jiraApiSpy.fetchIssuesOrderedById("project", "10100", 100);
+
+            assertEquals(issuesExpected, issuesFetched);
+            assertTrue(uriCaptor.getValue().getQuery().contains("id > 10100 ORDER BY id ASC"));
+        }
+
+        @Test
+        void shouldIterateIssuesAcrossSearchPagesAfterLastReadId() throws IOException {
+
+            var issueExpected_3 = new JiraIssuesResponse("10103", "JIRA-11", null);
+
+            ArgumentCaptor<URI> uriCaptor = ArgumentCaptor.forClass(URI.class);
+            doReturn(new ByteArrayInputStream(("{startAt:0, total:3,"
+                            + "issues:[{id:10101,key:JIRA-1}, {id:10102,key:JIRA-10}]}").getBytes(UTF_8)),
+                    new ByteArrayInputStream("{issues:[{id:10103,key:JIRA-11}],startAt:0,total:1}".getBytes(UTF_8)))
+                    .when(jiraApiSpy).openHttpGet(uriCaptor.capture());
+
+            try (var issueIterator = jiraApiSpy.iterateIssuesOrderedById("project", null, 2)) {
+                assertEquals(List.of(issueExpected_1, issueExpected_2), issueIterator.next(2));
+                assertEquals(List.of(issueExpected_3), issueIterator.next(2));
+                assertFalse(issueIterator.hasNext());
+            }
+
+            //the second page reaches the total it reports, which ends the search without asking for a third one
+            assertEquals(2, uriCaptor.getAllValues().size());
+            assertTrue(uriCaptor.getAllValues().get(1).getQuery().contains("id > 10102 ORDER BY id ASC"));
+        }
+
+        @Test
+        void shouldKeepIteratingWhenJiraReturnsFewerIssuesThanAskedFor() throws IOException {
+
+            var issueExpected_3 = new JiraIssuesResponse("10103", "JIRA-11", null);
+
+            //Jira caps maxResults on its side, so pages come back shorter than the page size
+            ArgumentCaptor<URI> uriCaptor = ArgumentCaptor.forClass(URI.class);
+            doReturn(new ByteArrayInputStream(RESPONSE_WITH_TWO_ISSUES_MOCK.replace("total:2", "total:3")
+                            .getBytes(UTF_8)),
+                    new ByteArrayInputStream("{startAt:2,total:3,issues:[{id:10103,key:JIRA-11}]}".getBytes(UTF_8)))
+                    .when(jiraApiSpy).openHttpGet(uriCaptor.capture());
+
+            try (var issueIterator = jiraApiSpy.iterateIssuesOrderedByCreatedDate("project", 0, 5)) {
+                assertEquals(List.of(issueExpected_1, issueExpected_2, issueExpected_3), issueIterator.next(5));
+                assertFalse(issueIterator.hasNext());
+            }
+
+            assertEquals(2, uriCaptor.getAllValues().size());
+            assertTrue(uriCaptor.getAllValues().get(1).getQuery().contains("startAt=2"));
+        }
+
         @Test
         void shouldGetIssuesOrderedByCreatedDateWithRetry() throws IOException {
 
             var issuesExpected = List.of(issueExpected_1, issueExpected_2);
 
-            doReturn(RESPONSE_WITH_TWO_ISSUES_MOCK).when(jiraApiSpy).sendHttpGet(any());
+            doAnswer(streamedJson(RESPONSE_WITH_TWO_ISSUES_MOCK)).when(jiraApiSpy).sendHttpGet(any(), any());
 
             var issuesFetched = jiraApiSpy.fetchIssuesOrderedByCreatedDate("project", 0, 100);
 
@@ -195,7 +293,7 @@ class JiraApiTest {
 
             var responseMock = String.format("{startAt:0,total:10,issues:[%s]}", gson.toJson(jiraIssuesResponseComplete));
 
-            doReturn(responseMock).when(jiraApiSpy).sendHttpGet(any());
+            doAnswer(streamedJson(responseMock)).when(jiraApiSpy).sendHttpGet(any(), any());
 
             var issueFetched = jiraApiSpy.fetchTestCreatedOrderEntry("PROJECT", 0, 10);
 
@@ -255,6 +353,74 @@ class JiraApiTest {
             assertEquals(testData, decodedData);
         }
 
+        @Test
+        void shouldCorrectlyDecodeZlibWrappedAndRawDeflatedData() throws IOException {
+
+            var testData = "test data";
+
+            for (var raw : List.of(false, true)) {
+                var byteArrayStream = new ByteArrayOutputStream();
+                var deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, raw);
+                var deflaterStream = new DeflaterOutputStream(byteArrayStream, deflater);
+
+                deflaterStream.write(testData.getBytes());
+                deflaterStream.close();
+                deflater.end();
+
+                assertEquals(testData, jiraApiSpy.decodeBody(byteArrayStream.toByteArray(), "Deflate"));
+            }
+        }
+
+        @Test
+        void shouldParseGzippedJsonWhileDecodingIt() throws IOException {
+
+            var byteArrayStream = new ByteArrayOutputStream();
+            var gzipStream = new GZIPOutputStream(byteArrayStream);
+
+            gzipStream.write("{startAt:0,total:10,issues:[{id:10100,key:JIRA-1}]}".getBytes(UTF_8));
+            gzipStream.close();
+
+            FetchJiraIssuesResponse parsed = jiraApiSpy.decodeBody(
+                    new ByteArrayInputStream(byteArrayStream.toByteArray()), "GZIP", FetchJiraIssuesResponse.class);
+
+            assertEquals(new FetchJiraIssuesResponse(0, 10, List.of(new JiraIssuesResponse("10100", "JIRA-1", null))),
+                    parsed);
+        }
+
+        @Test
+        void shouldFailWithTheParseErrorAsCauseAndCloseTheBodyWhenJsonIsMalformed() {
+            var closed = new AtomicBoolean(false);
+            var body = new ByteArrayInputStream("{\"startAt\": [".getBytes(UTF_8)) {
+                @Override
+                public void close() {
+                    closed.set(true);
+                }
+            };
+
+            var exception = assertThrows(ApiException.class,
+                    () -> jiraApiSpy.decodeBody(body, "identity", FetchJiraIssuesResponse.class));
+
+            assertInstanceOf(JsonParseException.class, exception.getCause());
+            assertTrue(closed.get());
+        }
+
+        @Test
+        void shouldCloseTheBodyWhenItCantBeDecoded() {
+            var closed = new AtomicBoolean(false);
+            var body = new ByteArrayInputStream("not gzipped".getBytes(UTF_8)) {
+                @Override
+                public void close() {
+                    closed.set(true);
+                }
+            };
+
+            var exception = assertThrows(ApiException.class,
+                    () -> jiraApiSpy.decodeBody(body, "gzip", FetchJiraIssuesResponse.class));
+
+            assertInstanceOf(IOException.class, exception.getCause());
+            assertTrue(closed.get());
+        }
+
         @Test
         void shouldKeepDataOriginalIfNotGzipped() throws IOException {
 
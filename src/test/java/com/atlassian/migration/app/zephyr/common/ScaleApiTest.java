@@ -15,6 +15,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -167,6 +169,18 @@ public class ScaleApiTest {
             assertThrows(ZephyrApiException.class, () -> scaleApiSpy.updateTestStep("TEST-1", squadUpdateStepPayload));
 
         }
+
+        @Test
+        void shouldFailWithZephyrApiExceptionIfApiExceptionWhenUpdateTestStepAsynchronously() {
+
+            doReturn(CompletableFuture.failedFuture(new ApiException(500, "error"))).when(scaleApiSpy)
+                    .sendHttpPutAsync(endpoint, squadUpdateStepPayload);
+
+            var exception = assertThrows(CompletionException.class,
+                    () -> scaleApiSpy.updateTestStepAsync("TEST-1", squadUpdateStepPayload).join());
+
+            assertInstanceOf(ZephyrApiException.class, exception.getCause());
+        }
     }
 
     @Nested
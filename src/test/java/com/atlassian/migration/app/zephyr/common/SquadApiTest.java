@@ -11,13 +11,18 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.lang.reflect.Type;
 import java.net.http.HttpClient;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
@@ -45,6 +50,12 @@ public class SquadApiTest {
         squadApiSpy = spy(new SquadApi(apiConfMock));
     }
 
+    //the stubbed body goes through the same streaming parse as a real response
+    private Answer<Object> streamedJson(String json) {
+        return invocation -> squadApiSpy.decodeBody(new ByteArrayInputStream(json.getBytes(UTF_8)), "identity",
+                invocation.<Type>getArgument(1));
+    }
+
     @Nested
     class whenCreating {
 
@@ -127,13 +138,25 @@ public class SquadApiTest {
 
             var fetchSquadTestStepResponseExpected = new FetchSquadTestStepResponse(testStepsExpected);
 
-            doReturn(FETCH_STEPS_RESPONSE_MOCK).when(squadApiSpy).sendHttpGet(any());
+            doAnswer(streamedJson(FETCH_STEPS_RESPONSE_MOCK)).when(squadApiSpy).sendHttpGet(any(), any());
 
             var fetchSquadTestStepResponseFetched = squadApiSpy.fetchLatestTestStepByTestCaseId("10100");
 
             assertEquals(fetchSquadTestStepResponseExpected, fetchSquadTestStepResponseFetched);
         }
 
+        @Test
+        void shouldGetStepsByStepIdAsynchronously() throws ApiException {
+
+            doReturn(CompletableFuture.completedFuture(new FetchSquadTestStepResponse(Collections.emptyList())))
+                    .when(squadApiSpy).sendHttpGetAsync(any(), any());
+
+            var fetchSquadTestStepResponseFetched = squadApiSpy.fetchLatestTestStepByTestCaseIdAsync("10100").join();
+
+            assertEquals(new FetchSquadTestStepResponse(Collections.emptyList()), fetchSquadTestStepResponseFetched);
+            verify(squadApiSpy, never()).sendHttpGet(any(), any());
+        }
+
         @Test
         void shouldFetchAttachmentsFromTestSteps() throws ApiException {
 
@@ -210,7 +233,7 @@ public class SquadApiTest {
 
             var responseMock = gson.toJson(fetchSquadExecutionResponseMock);
 
-            doReturn(responseMock).when(squadApiSpy).sendHttpGet(any());
+            doAnswer(streamedJson(responseMock)).when(squadApiSpy).sendHttpGet(any(), any());
 
             var fetchSquadExecutionParsedResponseExpected = new FetchSquadExecutionParsedResponse(
                     statusMap,
@@ -262,7 +285,7 @@ public class SquadApiTest {
 
             var responseMock = gson.toJson(fetchSquadExecutionResponseMock);
 
-            doReturn(responseMock).when(squadApiSpy).sendHttpGet(any());
+            doAnswer(streamedJson(responseMock)).when(squadApiSpy).sendHttpGet(any(), any());
 
             var fetchSquadExecutionParsedResponseExpected = new FetchSquadExecutionParsedResponse(
                     statusMap,
@@ -0,0 +1,55 @@
+package com.atlassian.migration.app.zephyr.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkerPoolTest {
+
+    @Test
+    void shouldQueueEnqueuedTasksWithoutBlockingWhileThePoolIsFull() throws InterruptedException {
+        try (var workerPool = WorkerPool.platform(1, "worker-pool-test")) {
+            var runningTaskReleased = new CountDownLatch(1);
+
+            var runningTask = workerPool.submit(() -> runningTaskReleased.await(5, TimeUnit.SECONDS));
+            var waitingTask = workerPool.enqueue(() -> "done");
+
+            assertFalse(waitingTask.isDone());
+
+            runningTaskReleased.countDown();
+
+            assertTrue(runningTask.join());
+            assertEquals("done", waitingTask.join());
+        }
+    }
+
+    @Test
+    void shouldFailEnqueuedTaskWithTheExceptionItThrew() {
+        try (var workerPool = WorkerPool.platform(1, "worker-pool-test")) {
+            var failedTask = workerPool.enqueue(() -> {
+                throw new IOException("Failed to reach Scale");
+            });
+
+            var exception = assertThrows(CompletionException.class, failedTask::join);
+            assertInstanceOf(IOException.class, exception.getCause());
+
+            assertEquals("done", workerPool.submit(() -> "done").join());
+        }
+    }
+
+    @Test
+    void shouldOnlyReportVirtualExecutionWhenVirtualThreadsAreAvailable() {
+        try (var workerPool = WorkerPool.virtual(2, "worker-pool-test")) {
+            var expectedMode = Runtime.version().feature() >= 21
+                    ? WorkerPool.ExecutionMode.VIRTUAL
+                    : WorkerPool.ExecutionMode.PLATFORM;
+
+            assertEquals(expectedMode, workerPool.executionMode());
+        }
+    }
+}
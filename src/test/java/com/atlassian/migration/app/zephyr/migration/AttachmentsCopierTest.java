@@ -4,16 +4,25 @@ import com.atlassian.migration.app.zephyr.migration.model.AttachmentAssociationD
 import com.atlassian.migration.app.zephyr.migration.model.SquadOriginEntity;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 
 import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class AttachmentsCopierTest {
@@ -127,6 +136,136 @@ class AttachmentsCopierTest {
         verify(attachmentsCopierSpy, times(3)).copyFile(any(), any());
     }
 
+    @Test
+    void shouldCopyInParallelAndSummarizeEveryFile() throws IOException {
+
+        var parallelCopierSpy = spy(new AttachmentsCopier(BASE_DIR, 4));
+
+        doReturn(true).when(parallelCopierSpy).isPathToAttachment(any());
+        doNothing().when(parallelCopierSpy).copyFile(any(), eq("1"));
+        doNothing().when(parallelCopierSpy).copyFile(any(), eq("2"));
+        doThrow(new IOException("disk full")).when(parallelCopierSpy).copyFile(any(), eq("3"));
+
+        var summary = parallelCopierSpy.copyAttachments(attachmentsMappedMock, mockProjectKey, mockProjectHistoricalKeys);
+
+        assertEquals(new AttachmentsCopier.CopySummary(2, 0, 1, 2 * 123456L), summary);
+        assertEquals(summary, parallelCopierSpy.runSummary());
+    }
+
+    @Test
+    void shouldCopyFilesIntoTheDestinationDirectory(@TempDir Path baseDir) throws IOException {
+
+        var originDir = Files.createDirectories(baseDir.resolve("PROJECT/teststep/1"));
+        Files.writeString(originDir.resolve("2"), "step attachment");
+        Files.writeString(Files.createDirectories(baseDir.resolve("PROJECT/schedule/1")).resolve("3"), "result");
+
+        var copier = new AttachmentsCopier(baseDir + "/", 2);
+
+        var summary = copier.copyAttachments(List.of(testStepAttachMappedMock, testExecAttachMappedMock),
+                mockProjectKey, mockProjectHistoricalKeys);
+
+        assertEquals(2, summary.copied());
+        assertEquals("step attachment", Files.readString(baseDir.resolve("kanoahTests/2")));
+        assertEquals("result", Files.readString(baseDir.resolve("kanoahTests/3")));
+    }
+
+    @Test
+    void shouldHardLinkFilesWithoutChangingTheirPermissions(@TempDir Path baseDir) throws IOException {
+
+        var originFile = Files.createDirectories(baseDir.resolve("PROJECT/teststep/1")).resolve("2");
+        Files.writeString(originFile, "step attachment");
+        Files.setPosixFilePermissions(originFile, PosixFilePermissions.fromString("rw-r-----"));
+
+        var copier = new AttachmentsCopier(baseDir + "/", 1, AttachmentsCopier.TransferMode.HARDLINK);
+
+        copier.copyAttachments(List.of(testStepAttachMappedMock), mockProjectKey, mockProjectHistoricalKeys);
+
+        assertTrue(Files.isSameFile(originFile, baseDir.resolve("kanoahTests/2")));
+        assertEquals("rw-r-----", PosixFilePermissions.toString(Files.getPosixFilePermissions(originFile)));
+    }
+
+    @Test
+    void shouldFallBackToCopyWhenFilesCantBeCloned(@TempDir Path baseDir) throws IOException {
+
+        Files.writeString(Files.createDirectories(baseDir.resolve("PROJECT/teststep/1")).resolve("2"), "step attachment");
+
+        var copier = new AttachmentsCopier(baseDir + "/", 1, AttachmentsCopier.TransferMode.REFLINK);
+
+        var summary = copier.copyAttachments(List.of(testStepAttachMappedMock), mockProjectKey,
+                mockProjectHistoricalKeys);
+
+        assertEquals(1, summary.copied());
+        assertEquals("step attachment", Files.readString(baseDir.resolve("kanoahTests/2")));
+    }
+
+    @Test
+    void shouldOnlyGiveUpCloningWhenTheVolumesCantClone() {
+
+        assertTrue(AttachmentsCopier.isCloningUnsupported(
+                "cp: failed to clone 'kanoahTests/2' from 'PROJECT/teststep/1/2': Operation not supported"));
+        assertTrue(AttachmentsCopier.isCloningUnsupported(
+                "cp: failed to clone 'kanoahTests/2' from 'PROJECT/teststep/1/2': Invalid cross-device link"));
+        assertTrue(AttachmentsCopier.isCloningUnsupported("cp: illegal option -- -"));
+
+        assertFalse(AttachmentsCopier.isCloningUnsupported(
+                "cp: cannot open 'PROJECT/teststep/1/2' for reading: Permission denied"));
+        assertFalse(AttachmentsCopier.isCloningUnsupported(
+                "cp: cannot stat 'PROJECT/teststep/1/2': No such file or directory"));
+    }
+
+    @Test
+    void shouldOnlyGiveUpHardLinksWhenTheVolumesCantLink() {
+
+        assertTrue(AttachmentsCopier.isHardLinkUnsupported(new FileSystemException(
+                "kanoahTests/2", "PROJECT/teststep/1/2", "Invalid cross-device link")));
+        assertTrue(AttachmentsCopier.isHardLinkUnsupported(new UnsupportedOperationException()));
+
+        assertFalse(AttachmentsCopier.isHardLinkUnsupported(new AccessDeniedException("PROJECT/teststep/1/2")));
+        assertFalse(AttachmentsCopier.isHardLinkUnsupported(new NoSuchFileException("PROJECT/teststep/1/2")));
+    }
+
+    @Test
+    void shouldResolveAttachmentsFromTheDirectoryIndexAndCountMisses(@TempDir Path baseDir) throws IOException {
+
+        Files.writeString(Files.createDirectories(baseDir.resolve("PROJECT/teststep/1")).resolve("2"), "step attachment");
+        Files.createDirectories(baseDir.resolve("PROJECT/10000/PROJECT-1"));
+
+        var copier = new AttachmentsCopier(baseDir + "/");
+
+        var summary = copier.copyAttachments(List.of(testStepAttachMappedMock, testCaseAttachMappedMock),
+                mockProjectKey, mockProjectHistoricalKeys);
+
+        assertEquals(new AttachmentsCopier.CopySummary(1, 1, 0, 123456L), summary);
+
+        //the directory was indexed on the first lookup, so files showing up later are not probed for
+        Files.writeString(baseDir.resolve("PROJECT/10000/PROJECT-1/1"), "case attachment");
+
+        assertFalse(copier.isPathToAttachment(baseDir + "/PROJECT/10000/PROJECT-1/1"));
+
+        copier.releaseProject(mockProjectKey);
+
+        assertTrue(copier.isPathToAttachment(baseDir + "/PROJECT/10000/PROJECT-1/1"));
+    }
+
+    @Test
+    void shouldForgetTheProjectHistoricalKeysOnceTheProjectIsReleased() throws IOException {
+
+        doReturn(new AttachmentsCopier.ProjectHistoricalKeys("PROJECT", "PROJECT", List.of("PROJECT")))
+                .when(attachmentsCopierSpy).getOriginalProjectKey(any(), any());
+
+        doReturn(true).when(attachmentsCopierSpy).isPathToAttachment(any());
+
+        attachmentsCopierSpy.copyAttachments(List.of(testCaseAttachMappedMock), mockProjectKey, mockProjectHistoricalKeys);
+        attachmentsCopierSpy.copyAttachments(List.of(testCaseAttachMappedMock), mockProjectKey, mockProjectHistoricalKeys);
+
+        verify(attachmentsCopierSpy, times(1)).getOriginalProjectKey(any(), any());
+
+        attachmentsCopierSpy.releaseProject(mockProjectKey);
+        attachmentsCopierSpy.copyAttachments(List.of(testCaseAttachMappedMock), mockProjectKey, mockProjectHistoricalKeys);
+
+        verify(attachmentsCopierSpy, times(2)).getOriginalProjectKey(any(), any());
+    }
+
     @Test
     void shouldCalculateJiraIssueBucketCorrectly() {
 
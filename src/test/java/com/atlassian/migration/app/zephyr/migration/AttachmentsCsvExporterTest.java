@@ -0,0 +1,86 @@
+package com.atlassian.migration.app.zephyr.migration;
+
+import com.atlassian.migration.app.zephyr.migration.model.AttachmentAssociationData;
+import com.atlassian.migration.app.zephyr.migration.model.SquadOriginEntity;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AttachmentsCsvExporterTest {
+
+    @Test
+    void shouldQuoteOnlyFieldsThatNeedIt() throws IOException {
+        var row = new StringWriter();
+
+        AttachmentsCsvExporter.writeRow(row, AttachmentAssociationData.createAttachmentAssociationDataFromTestCase(
+                "report, \"final\".pdf", "1001", "application/pdf", "2048", "admin", "10000", "42",
+                new SquadOriginEntity("1", "TC-1")));
+
+        assertTrue(row.toString().startsWith("1001,2048,\"report, \"\"final\"\".pdf\",10000,admin,false,"));
+        assertTrue(row.toString().endsWith(",application/pdf,42,,\r\n"));
+    }
+
+    @Test
+    void shouldKeepTheFileOpenAndAppendWhenResuming(@TempDir Path tempDir) throws IOException, URISyntaxException {
+        var csvFile = tempDir.resolve("attachments.csv");
+
+        var exporter = new AttachmentsCsvExporter(csvFile.toString());
+        exporter.dump(List.of(attachment("1")));
+        exporter.dump(List.of(attachment("2")));
+        exporter.flush();
+
+        assertEquals(3, Files.readAllLines(csvFile).size());
+
+        exporter.close();
+        exporter.close();
+        assertThrows(IOException.class, () -> exporter.dump(List.of(attachment("3"))));
+
+        try (var resumedExporter = new AttachmentsCsvExporter(csvFile.toString(), true)) {
+            resumedExporter.dump(List.of(attachment("3")));
+        }
+
+        var lines = Files.readAllLines(csvFile);
+
+        assertEquals(4, lines.size());
+        assertEquals(String.join(",", AttachmentsCsvExporter.CSV_HEADER), lines.get(0));
+        assertEquals("3", lines.get(3).split(",")[0]);
+    }
+
+    @Test
+    void shouldDiscardRowsOfUnfinishedPagesWhenResuming(@TempDir Path tempDir) throws IOException, URISyntaxException {
+        var csvFile = tempDir.resolve("attachments.csv");
+
+        long committedLength;
+        try (var exporter = new AttachmentsCsvExporter(csvFile.toString())) {
+            exporter.dump(List.of(attachment("1")));
+            committedLength = exporter.length();
+            exporter.dump(List.of(attachment("2")));
+        }
+
+        try (var resumedExporter = new AttachmentsCsvExporter(csvFile.toString(), true)) {
+            resumedExporter.discardAfter(committedLength);
+            resumedExporter.dump(List.of(attachment("2")));
+        }
+
+        var lines = Files.readAllLines(csvFile);
+
+        assertEquals(3, lines.size());
+        assertEquals("1", lines.get(1).split(",")[0]);
+        assertEquals("2", lines.get(2).split(",")[0]);
+    }
+
+    private static AttachmentAssociationData attachment(String fileName) {
+        return AttachmentAssociationData.createAttachmentAssociationDataFromTestCase(
+                "file.txt", fileName, "text/plain", "10", "admin", "10000", "42", new SquadOriginEntity("1", "TC-1"));
+    }
+}
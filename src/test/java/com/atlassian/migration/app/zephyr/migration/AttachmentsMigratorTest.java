@@ -25,6 +25,7 @@ import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -72,13 +73,15 @@ class AttachmentsMigratorTest {
                 squadApiMock,
                 driverManagerDataSourceMock,
                 attachmentsCsvExporterMock,
-                attachmentsCopier);
+                attachmentsCopier,
+                null,
+                AttachmentsMigrator.ExportMode.CSV);
 
         testCaseMap.put(
                 new SquadToScaleTestCaseMap.TestCaseMapKey("1", "SQUAD-1"), "SCALE-1"
         );
 
-        doNothing().when(attachmentsCopier).copyAttachments(any(), any(), any());
+        doReturn(AttachmentsCopier.CopySummary.EMPTY).when(attachmentsCopier).copyAttachments(any(), any(), any());
 
         when(driverManagerDataSourceMock.getUrl()).thenReturn("jdbc:postgresql://localhost:5432/jira");
 
@@ -140,18 +143,30 @@ class AttachmentsMigratorTest {
         when(squadApiMock.fetchTestExecutionAttachmentById(any())).thenReturn(new FetchSquadAttachmentResponse(squadAttachmentsMockList));
 
 
-        doNothing().when(attachmentsCsvExporterMock).dump(any(), any(), any());
+        doNothing().when(attachmentsCsvExporterMock).dump(any());
     }
 
     @Test
     void shouldCallCsvExportDumpOnlyOnce() throws IOException, URISyntaxException {
 
         attachmentsMigratorSpy.export(squadToScaleEntitiesMapMock, projectKey);
+        attachmentsMigratorSpy.commitPage(projectKey);
 
-        verify(attachmentsCsvExporterMock, times(1)).dump(any(), any(), any());
+        verify(attachmentsCsvExporterMock, times(1)).dump(any());
 
     }
 
+    @Test
+    void shouldFailThePageCommitWhenTheCsvRowsCannotBeWritten() throws IOException, URISyntaxException {
+        doThrow(new IOException("No space left on device")).when(attachmentsCsvExporterMock).dump(any());
+
+        attachmentsMigratorSpy.export(squadToScaleEntitiesMapMock, projectKey);
+
+        //the page must not be recorded as done, so its attachments are exported again on resume
+        assertThrows(RuntimeException.class, () -> attachmentsMigratorSpy.commitPage(projectKey));
+        verify(attachmentsCsvExporterMock, never()).length();
+    }
+
     @Test
     void shouldCallCpAttachmentsOnlyOnce() throws IOException {
 
@@ -160,6 +175,15 @@ class AttachmentsMigratorTest {
         verify(attachmentsCopier, times(1)).copyAttachments(any(), any(), any());
     }
 
+    @Test
+    void shouldFetchProjectMetadataOncePerProject() throws IOException {
+
+        attachmentsMigratorSpy.export(squadToScaleEntitiesMapMock, projectKey);
+        attachmentsMigratorSpy.export(squadToScaleEntitiesMapMock, projectKey);
+
+        verify(jiraApiMock, times(1)).getProjectByKeyWithHistoricalKeys(projectKey);
+    }
+
     @Test
     void shouldFetchTestStepFromScaleOncePerKey() throws IOException {
 
@@ -182,8 +206,9 @@ class AttachmentsMigratorTest {
         ArgumentCaptor<List<AttachmentAssociationData>> captorListAttachmentsAssociationData = ArgumentCaptor.forClass(List.class);
 
         attachmentsMigratorSpy.export(squadToScaleEntitiesMapMock, projectKey);
+        attachmentsMigratorSpy.commitPage(projectKey);
 
-        verify(attachmentsCsvExporterMock).dump(captorListAttachmentsAssociationData.capture(), any(), any());
+        verify(attachmentsCsvExporterMock).dump(captorListAttachmentsAssociationData.capture());
 
         List<AttachmentAssociationData> captured = captorListAttachmentsAssociationData.getValue();
 
@@ -192,4 +217,22 @@ class AttachmentsMigratorTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    void shouldOnlyExportAttachmentsOnceTheirPageIsCommitted() throws IOException, URISyntaxException {
+
+        attachmentsMigratorSpy.export(squadToScaleEntitiesMapMock, projectKey);
+        attachmentsMigratorSpy.export(squadToScaleEntitiesMapMock, projectKey);
+
+        verify(attachmentsCsvExporterMock, never()).dump(any());
+
+        attachmentsMigratorSpy.commitPage(projectKey);
+        attachmentsMigratorSpy.commitPage(projectKey);
+
+        ArgumentCaptor<List<AttachmentAssociationData>> captorListAttachmentsAssociationData = ArgumentCaptor.forClass(List.class);
+        verify(attachmentsCsvExporterMock, times(1)).dump(captorListAttachmentsAssociationData.capture());
+        verify(attachmentsCsvExporterMock, times(2)).length();
+
+        assertEquals(2 * testExecMap.keySet().size() * squadAttachmentsMockList.size(),
+                captorListAttachmentsAssociationData.getValue().size());
+    }
+}
@@ -0,0 +1,98 @@
+package com.atlassian.migration.app.zephyr.migration;
+
+import com.atlassian.migration.app.zephyr.jira.model.JiraIssuesResponse;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IssuePageReaderTest {
+
+    @Test
+    void shouldReadPagesInOrderWhenPrefetching() {
+        var readStarts = new ArrayList<Integer>();
+
+        try (var reader = new IssuePageReader((startAt, afterIssueId) -> pageOf(startAt), 0, 25, 10, 2)) {
+            while (reader.hasNext()) {
+                var page = reader.next();
+                readStarts.add(page.startAt());
+                assertEquals(String.valueOf(page.startAt()), page.issues().get(0).id());
+            }
+        }
+
+        assertEquals(List.of(0, 10, 20), readStarts);
+    }
+
+    @Test
+    void shouldNotFetchMoreThanPrefetchDepthPagesAhead() throws InterruptedException {
+        var fetchedStarts = new CopyOnWriteArrayList<Integer>();
+
+        try (var reader = new IssuePageReader((startAt, afterIssueId) -> {
+            fetchedStarts.add(startAt);
+            return pageOf(startAt);
+        }, 0, 100, 10, 1)) {
+
+            reader.next();
+            //gives the background thread time to fetch anything it was allowed to
+            Thread.sleep(100);
+
+            assertEquals(List.of(0, 10), fetchedStarts);
+        }
+    }
+
+    @Test
+    void shouldFetchOnCallingThreadWhenPrefetchIsDisabled() {
+        var fetchingThreads = new ArrayList<Thread>();
+
+        try (var reader = new IssuePageReader((startAt, afterIssueId) -> {
+            fetchingThreads.add(Thread.currentThread());
+            return pageOf(startAt);
+        }, 5, 15, 5, 0)) {
+            assertEquals(5, reader.next().startAt());
+            assertEquals(10, reader.next().startAt());
+            assertFalse(reader.hasNext());
+        }
+
+        assertEquals(List.of(Thread.currentThread(), Thread.currentThread()), fetchingThreads);
+    }
+
+    @Test
+    void shouldFailWhenPageFetchFails() {
+        try (var reader = new IssuePageReader((startAt, afterIssueId) -> {
+            throw new IOException("search failed");
+        }, 0, 10, 5, 1)) {
+            var exception = assertThrows(RuntimeException.class, reader::next);
+            assertInstanceOf(IOException.class, exception.getCause());
+        }
+    }
+
+    @Test
+    void shouldPageAfterLastIssueIdAndStopOnEmptyPageInKeysetMode() {
+        var afterIssueIds = new CopyOnWriteArrayList<String>();
+        var readPages = new ArrayList<IssuePageReader.Page>();
+
+        try (var reader = new IssuePageReader((startAt, afterIssueId) -> {
+            afterIssueIds.add(String.valueOf(afterIssueId));
+            var firstId = afterIssueId == null ? 1 : Integer.parseInt(afterIssueId) + 1;
+            return firstId > 4 ? List.of() : List.of(
+                    new JiraIssuesResponse(String.valueOf(firstId), "KEY-" + firstId, null),
+                    new JiraIssuesResponse(String.valueOf(firstId + 1), "KEY-" + (firstId + 1), null));
+        }, IssuePageReader.PaginationMode.KEYSET, 0, null, 100, 2, 1)) {
+            while (reader.hasNext()) {
+                readPages.add(reader.next());
+            }
+        }
+
+        assertEquals(List.of("null", "2", "4"), afterIssueIds.subList(0, 3));
+        assertEquals(List.of("2", "4", "4"), readPages.stream().map(IssuePageReader.Page::lastIssueId).toList());
+        assertTrue(readPages.get(2).issues().isEmpty());
+    }
+
+    private List<JiraIssuesResponse> pageOf(int startAt) {
+        return List.of(new JiraIssuesResponse(String.valueOf(startAt), "KEY-" + startAt, null));
+    }
+}
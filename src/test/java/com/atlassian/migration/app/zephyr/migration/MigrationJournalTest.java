@@ -0,0 +1,126 @@
+package com.atlassian.migration.app.zephyr.migration;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MigrationJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldReplayRecordedMappingsWhenResuming() throws IOException {
+        var journalPath = tempDir.resolve("migration.journal");
+
+        try (var journal = MigrationJournal.open(journalPath, false)) {
+            journal.projectSetUp("PROJECT");
+            journal.pageCompleted("PROJECT", 100, null, -1);
+            journal.testCaseCreated("PROJECT", "10001", "PROJECT-T1");
+            journal.stepsUpdated("PROJECT", "10001");
+            journal.cycleCreated("PROJECT", "Cycle\twith tab", "PROJECT-R1");
+            journal.testResultCreated("PROJECT", "500", "9001");
+        }
+
+        try (var resumed = MigrationJournal.open(journalPath, true)) {
+            assertTrue(resumed.isProjectSetUp("PROJECT"));
+            assertFalse(resumed.isProjectDone("PROJECT"));
+            assertEquals(100, resumed.nextPageStart("PROJECT"));
+            assertEquals("PROJECT-T1", resumed.testCaseKey("PROJECT", "10001"));
+            assertTrue(resumed.areStepsUpdated("PROJECT", "10001"));
+            assertEquals("9001", resumed.testResultId("PROJECT", "500"));
+            assertEquals(Map.of("Cycle\twith tab", "PROJECT-R1"), resumed.cycleKeys("PROJECT"));
+
+            //once the unfinished page is completed again its mappings aren't needed anymore
+            resumed.pageCompleted("PROJECT", 200, null, -1);
+            assertNull(resumed.testCaseKey("PROJECT", "10001"));
+        }
+    }
+
+    @Test
+    void shouldIgnoreTruncatedLastRecordWhenResuming() throws IOException {
+        var journalPath = tempDir.resolve("migration.journal");
+
+        try (var journal = MigrationJournal.open(journalPath, false)) {
+            journal.testCaseCreated("PROJECT", "10001", "PROJECT-T1");
+        }
+
+        Files.writeString(journalPath, "TC\tPROJECT\t10002", StandardOpenOption.APPEND);
+
+        try (var resumed = MigrationJournal.open(journalPath, true)) {
+            assertEquals("PROJECT-T1", resumed.testCaseKey("PROJECT", "10001"));
+            assertNull(resumed.testCaseKey("PROJECT", "10002"));
+
+            resumed.testCaseCreated("PROJECT", "10003", "PROJECT-T3");
+        }
+
+        //the torn record was cut off, so the one appended after it is read back whole
+        try (var resumedAgain = MigrationJournal.open(journalPath, true)) {
+            assertEquals("PROJECT-T3", resumedAgain.testCaseKey("PROJECT", "10003"));
+        }
+    }
+
+    @Test
+    void shouldOnlyResumeARunWithTheSameProjectsAndPagination() throws IOException {
+        var journalPath = tempDir.resolve("migration.journal");
+
+        try (var journal = MigrationJournal.open(journalPath, false)) {
+            journal.runStarted(MigrationJournal.ALL_PROJECTS, "keyset");
+            journal.pageCompleted("PROJECT", 100, "10100", -1);
+        }
+
+        try (var resumed = MigrationJournal.open(journalPath, true)) {
+            assertDoesNotThrow(() -> resumed.runStarted(MigrationJournal.ALL_PROJECTS, "keyset"));
+            assertThrows(IllegalStateException.class, () -> resumed.runStarted(MigrationJournal.ALL_PROJECTS, "offset"));
+            assertThrows(IllegalStateException.class, () -> resumed.runStarted("PROJECT", "keyset"));
+        }
+    }
+
+    @Test
+    void shouldDiscardPreviousJournalWhenNotResuming() throws IOException {
+        var journalPath = tempDir.resolve("migration.journal");
+
+        try (var journal = MigrationJournal.open(journalPath, false)) {
+            journal.testCaseCreated("PROJECT", "10001", "PROJECT-T1");
+            journal.projectDone("PROJECT");
+        }
+
+        try (var fresh = MigrationJournal.open(journalPath, false)) {
+            assertNull(fresh.testCaseKey("PROJECT", "10001"));
+            assertFalse(fresh.isProjectDone("PROJECT"));
+            assertEquals(0, fresh.nextPageStart("PROJECT"));
+        }
+    }
+
+    @Test
+    void shouldOnlyKeepMappingsOfUnfinishedPagesWhenResuming() throws IOException {
+        var journalPath = tempDir.resolve("migration.journal");
+
+        try (var journal = MigrationJournal.open(journalPath, false)) {
+            journal.testCaseCreated("PROJECT", "10001", "PROJECT-T1");
+            journal.testCaseCreated("DONE", "20001", "DONE-T1");
+            journal.pageCompleted("PROJECT", 100, null, 300);
+            journal.testCaseCreated("PROJECT", "10002", "PROJECT-T2");
+            journal.pageCompleted("DONE", 100, "20001", 250);
+            journal.projectDone("DONE");
+
+            //a run never looks up what it migrated itself
+            assertNull(journal.testCaseKey("PROJECT", "10002"));
+        }
+
+        try (var resumed = MigrationJournal.open(journalPath, true)) {
+            assertNull(resumed.testCaseKey("PROJECT", "10001"));
+            assertEquals("PROJECT-T2", resumed.testCaseKey("PROJECT", "10002"));
+            assertNull(resumed.testCaseKey("DONE", "20001"));
+            assertTrue(resumed.isProjectDone("DONE"));
+            assertEquals(300, resumed.attachmentsCsvLength());
+        }
+    }
+}
@@ -1,27 +1,41 @@
 package com.atlassian.migration.app.zephyr.migration;
 
 import com.atlassian.migration.app.zephyr.common.ApiConfiguration;
+import com.atlassian.migration.app.zephyr.common.WorkerPool;
 import com.atlassian.migration.app.zephyr.jira.api.JiraApi;
 import com.atlassian.migration.app.zephyr.jira.model.*;
+import com.atlassian.migration.app.zephyr.migration.model.SquadToScaleEntitiesMap;
+import com.atlassian.migration.app.zephyr.migration.model.SquadToScaleTestCaseMap;
 import com.atlassian.migration.app.zephyr.scale.api.ScaleApi;
 import com.atlassian.migration.app.zephyr.scale.model.GetAllProjectsResponse;
 import com.atlassian.migration.app.zephyr.scale.model.GetProjectResponse;
 import com.atlassian.migration.app.zephyr.scale.model.Option;
+import com.atlassian.migration.app.zephyr.scale.model.ScaleExecutionCreationPayload;
+import com.atlassian.migration.app.zephyr.scale.model.ScalePOSTTestResultPayload;
 import com.atlassian.migration.app.zephyr.scale.model.ScaleTestResultCreatedPayload;
 import com.atlassian.migration.app.zephyr.squad.api.SquadApi;
 import com.atlassian.migration.app.zephyr.squad.model.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 class SquadToScaleMigratorTest {
@@ -54,12 +68,9 @@ class SquadToScaleMigratorTest {
     void setup() throws IOException {
         MockitoAnnotations.openMocks(this);
 
-        migConfigSpy = spy(new MigrationConfiguration(apiConfigurationMock,
-                5,
-                "CYCLE",
-                "attachments_mapped.csv",
-                "postgres",
-                "/home/ubuntu"));
+        migConfigSpy = spy(MigrationConfiguration.builder(apiConfigurationMock, 5, "CYCLE",
+                "attachments_mapped.csv", "postgres", "/home/ubuntu")
+                .build());
 
         migratorSpy = spy(new SquadToScaleMigrator(jiraApiMock, squadApiMock, scaleApiMock, attachmentsMigratorMock,
                 migConfigSpy));
@@ -144,6 +155,39 @@ class SquadToScaleMigratorTest {
             verify(attachmentsMigratorMock, times(interactionsExpected)).export(any(), any());
 
         }
+
+        @Test
+        void shouldResumeFromLastCompletedPageAndSkipMigratedTestCases(@TempDir Path tempDir) throws IOException {
+
+            try (var previousRun = MigrationJournal.open(tempDir.resolve("migration.journal"), false)) {
+                previousRun.projectSetUp("PROJECT-1");
+                previousRun.pageCompleted("PROJECT-1", 5, null, -1);
+                previousRun.testCaseCreated("PROJECT-1", "6", "PROJECT-1-T6");
+            }
+
+            try (var journal = MigrationJournal.open(tempDir.resolve("migration.journal"), true)) {
+                var resumedMigrator = new SquadToScaleMigrator(jiraApiMock, squadApiMock, scaleApiMock,
+                        attachmentsMigratorMock, migConfigSpy, null, journal);
+
+                when(jiraApiMock.fetchTotalIssuesByProjectName(any())).thenReturn(10);
+                when(jiraApiMock.fetchIssuesOrderedByCreatedDate(any(), any(), any())).thenReturn(List.of(
+                        new JiraIssuesResponse("6", "KEY-6", fieldsMock),
+                        new JiraIssuesResponse("7", "KEY-7", fieldsMock)));
+                when(scaleApiMock.createTestCases(any())).thenReturn("PROJECT-1-T7");
+                when(squadApiMock.fetchLatestTestStepByTestCaseIdAsync(any()))
+                    .thenReturn(CompletableFuture.completedFuture(new FetchSquadTestStepResponse(Collections.emptyList())));
+                when(squadApiMock.fetchLatestExecutionByIssueId(any())).thenReturn(emptyExecutionsMock);
+
+                resumedMigrator.runMigration("PROJECT-1");
+
+                verify(jiraApiMock, times(1)).fetchIssuesOrderedByCreatedDate(eq("PROJECT-1"), eq(5), any());
+                verify(scaleApiMock, never()).createCustomField(any());
+                verify(scaleApiMock, times(1)).createTestCases(any());
+
+                assertTrue(journal.isProjectDone("PROJECT-1"));
+                assertTrue(Files.readString(tempDir.resolve("migration.journal")).contains("TC\tPROJECT-1\t7\tPROJECT-1-T7"));
+            }
+        }
     }
 
     @Nested
@@ -158,7 +202,7 @@ class SquadToScaleMigratorTest {
 
             when(scaleApiMock.createTestCases(any())).thenReturn("KEY-1");
 
-            doNothing().when(scaleApiMock).updateTestStep(any(), any());
+            when(scaleApiMock.updateTestStepAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
 
         }
 
@@ -166,7 +210,8 @@ class SquadToScaleMigratorTest {
         @Test
         void shouldCreateOneTestCasePerIssue() throws IOException, ExecutionException, InterruptedException {
 
-            when(squadApiMock.fetchLatestTestStepByTestCaseId(any())).thenReturn(new FetchSquadTestStepResponse(Collections.emptyList()));
+            when(squadApiMock.fetchLatestTestStepByTestCaseIdAsync(any()))
+                    .thenReturn(CompletableFuture.completedFuture(new FetchSquadTestStepResponse(Collections.emptyList())));
 
             when(squadApiMock.fetchLatestExecutionByIssueId(any())).thenReturn(emptyExecutionsMock);
 
@@ -176,6 +221,157 @@ class SquadToScaleMigratorTest {
 
         }
 
+        @Test
+        void shouldMapEveryIssueWhenCreatingTestCasesConcurrently() throws IOException {
+
+            var concurrentMigConfig = MigrationConfiguration.builder(apiConfigurationMock, 5, "CYCLE",
+                    "attachments_mapped.csv", "postgres", "/home/ubuntu")
+                    .testCaseCreationThreads(3)
+                    .build();
+
+            var concurrentMigrator = new SquadToScaleMigrator(jiraApiMock, squadApiMock, scaleApiMock,
+                    attachmentsMigratorMock, concurrentMigConfig);
+
+            var createdKeys = new AtomicInteger();
+            when(scaleApiMock.createTestCases(any())).thenAnswer(invocation -> "SCALE-" + createdKeys.incrementAndGet());
+            when(squadApiMock.fetchLatestTestStepByTestCaseIdAsync(any()))
+                    .thenReturn(CompletableFuture.completedFuture(new FetchSquadTestStepResponse(Collections.emptyList())));
+            when(squadApiMock.fetchLatestExecutionByIssueId(any())).thenReturn(emptyExecutionsMock);
+
+            ArgumentCaptor<SquadToScaleEntitiesMap> entitiesMapCaptor = ArgumentCaptor.forClass(SquadToScaleEntitiesMap.class);
+
+            concurrentMigrator.runMigration("PROJECT");
+
+            verify(scaleApiMock, times(issuesMock.size())).createTestCases(any());
+            verify(attachmentsMigratorMock).export(entitiesMapCaptor.capture(), any());
+
+            var testCaseMap = entitiesMapCaptor.getValue().testCaseMap();
+
+            assertEquals(issuesMock.size(), testCaseMap.size());
+            assertEquals(issuesMock.size(), new HashSet<>(testCaseMap.values()).size());
+            issuesMock.forEach(issue -> assertTrue(testCaseMap.containsKey(
+                    new SquadToScaleTestCaseMap.TestCaseMapKey(issue.id(), issue.key()))));
+        }
+
+        @Test
+        void shouldUpdateStepsAndPostExecutionsOncePerIssueOnVirtualExecutionMode() throws IOException {
+
+            var virtualMigConfig = MigrationConfiguration.builder(apiConfigurationMock, 5, "CYCLE",
+                    "attachments_mapped.csv", "postgres", "/home/ubuntu")
+                    .executionMode(WorkerPool.ExecutionMode.VIRTUAL)
+                    .maxInFlightTasks(4)
+                    .build();
+
+            var virtualMigrator = new SquadToScaleMigrator(jiraApiMock, squadApiMock, scaleApiMock,
+                    attachmentsMigratorMock, virtualMigConfig);
+
+            var stepBeanCollectionMock = List.of(
+                    new SquadTestStepResponse("1", "1", "step", "data", "result", Collections.emptyList()));
+
+            when(squadApiMock.fetchLatestTestStepByTestCaseIdAsync(any()))
+                    .thenReturn(CompletableFuture.completedFuture(new FetchSquadTestStepResponse(stepBeanCollectionMock)));
+            when(squadApiMock.fetchLatestExecutionByIssueId(any())).thenReturn(emptyExecutionsMock);
+
+            virtualMigrator.runMigration("PROJECT");
+
+            verify(scaleApiMock, times(issuesMock.size())).createTestCases(any());
+            verify(scaleApiMock, times(issuesMock.size())).updateTestStepAsync(any(), any());
+            verify(squadApiMock, times(issuesMock.size())).fetchLatestExecutionByIssueId(any());
+        }
+
+        @Test
+        void shouldMoveEveryIssueThroughAllStagesOnPipelinedPageProcessing() throws IOException {
+
+            var pipelinedMigConfig = MigrationConfiguration.builder(apiConfigurationMock, 5, "CYCLE",
+                    "attachments_mapped.csv", "postgres", "/home/ubuntu")
+                    .testCaseCreationThreads(2)
+                    .pageProcessingMode(SquadToScaleMigrator.PageProcessingMode.PIPELINED)
+                    .build();
+
+            var pipelinedMigrator = new SquadToScaleMigrator(jiraApiMock, squadApiMock, scaleApiMock,
+                    attachmentsMigratorMock, pipelinedMigConfig);
+
+            var stepBeanCollectionMock = List.of(
+                    new SquadTestStepResponse("1", "1", "step", "data", "result", Collections.emptyList()));
+
+            when(squadApiMock.fetchLatestTestStepByTestCaseIdAsync(any()))
+                    .thenReturn(CompletableFuture.completedFuture(new FetchSquadTestStepResponse(stepBeanCollectionMock)));
+            when(squadApiMock.fetchLatestExecutionByIssueId(any())).thenReturn(emptyExecutionsMock);
+
+            ArgumentCaptor<SquadToScaleEntitiesMap> entitiesCaptor = ArgumentCaptor.forClass(SquadToScaleEntitiesMap.class);
+
+            pipelinedMigrator.runMigration("PROJECT");
+
+            verify(scaleApiMock, times(issuesMock.size())).createTestCases(any());
+            verify(scaleApiMock, times(issuesMock.size())).updateTestStepAsync(any(), any());
+            verify(attachmentsMigratorMock, times(issuesMock.size())).export(entitiesCaptor.capture(), any(), any());
+            //the Scale ids of the page's test cases are resolved once, not once per issue
+            verify(attachmentsMigratorMock, times(1)).resolveTestCaseIds(argThat(keys -> keys.size() == issuesMock.size()));
+
+            entitiesCaptor.getAllValues().forEach(entitiesMap -> {
+                assertEquals(1, entitiesMap.testCaseMap().size());
+                assertEquals(1, entitiesMap.testStepMap().size());
+            });
+        }
+
+        @Test
+        void shouldMigrateProjectsConcurrentlyWithTheirOwnCycles() throws IOException {
+
+            var concurrentMigConfig = MigrationConfiguration.builder(apiConfigurationMock, 5, "CYCLE",
+                    "attachments_mapped.csv", "postgres", "/home/ubuntu")
+                    .projectConcurrency(2)
+                    .build();
+
+            var concurrentMigrator = new SquadToScaleMigrator(jiraApiMock, squadApiMock, scaleApiMock,
+                    attachmentsMigratorMock, concurrentMigConfig);
+
+            when(squadApiMock.getAllProjects()).thenReturn(new GetAllProjectsResponse(List.of(
+                    new Option("true", "label", "PROJECT", "1"),
+                    new Option("true", "label", "PROJECT", "2"))));
+            when(jiraApiMock.getProjectById("1")).thenReturn(new GetProjectResponse("PROJECT-1", "1", Collections.emptyList()));
+            when(jiraApiMock.getProjectById("2")).thenReturn(new GetProjectResponse("PROJECT-2", "2", Collections.emptyList()));
+
+            var executionsMock = List.of(new SquadExecutionItemParsedResponse("1",
+                    new SquadExecutionTypeResponse(1, "wip"), null, null,
+                    "versionName", "comment", "executedOn",
+                    "assignedTo", "assignedTo", "assigneeTo", "CYCLE-1", "folder"));
+
+            when(squadApiMock.fetchLatestTestStepByTestCaseIdAsync(any()))
+                    .thenReturn(CompletableFuture.completedFuture(new FetchSquadTestStepResponse(Collections.emptyList())));
+            when(squadApiMock.fetchLatestExecutionByIssueId(any())).thenReturn(new FetchSquadExecutionParsedResponse(
+                    Collections.emptyMap(), "10100", 0, 0, false, false, executionsMock));
+            when(scaleApiMock.createMigrationTestCycle(any(), any(), any())).thenReturn("CYCLE-KEY");
+            when(scaleApiMock.createTestResults(any(), any())).thenAnswer(invocation -> createdResultsFor(invocation.getArgument(1)));
+
+            concurrentMigrator.getProjectListAndRunMigration();
+
+            verify(scaleApiMock, times(2 * issuesMock.size())).createTestCases(any());
+            //the cycle cache of one project is never reused by the other
+            verify(scaleApiMock).createMigrationTestCycle(eq("PROJECT-1"), any(), any());
+            verify(scaleApiMock).createMigrationTestCycle(eq("PROJECT-2"), any(), any());
+        }
+
+        @Test
+        void shouldPassSearchPageAttachmentsToAttachmentsExport() throws IOException {
+
+            var attachmentMock = new Attachment("self", "10", "file.txt", null, "created", "12", "text/plain");
+            fieldsMock.attachment = List.of(attachmentMock);
+
+            when(squadApiMock.fetchLatestTestStepByTestCaseIdAsync(any()))
+                    .thenReturn(CompletableFuture.completedFuture(new FetchSquadTestStepResponse(Collections.emptyList())));
+            when(squadApiMock.fetchLatestExecutionByIssueId(any())).thenReturn(emptyExecutionsMock);
+
+            ArgumentCaptor<SquadToScaleEntitiesMap> entitiesCaptor = ArgumentCaptor.forClass(SquadToScaleEntitiesMap.class);
+
+            migratorSpy.runMigration("PROJECT");
+
+            verify(attachmentsMigratorMock).export(entitiesCaptor.capture(), any());
+
+            var testCaseAttachmentsMap = entitiesCaptor.getValue().testCaseAttachmentsMap();
+            assertEquals(issuesMock.size(), testCaseAttachmentsMap.size());
+            assertEquals(List.of(attachmentMock), testCaseAttachmentsMap.get("1"));
+        }
+
         @Test
         void shouldCallUpdateTestStepOncePerIssue() throws IOException, ExecutionException, InterruptedException {
 
@@ -187,20 +383,22 @@ class SquadToScaleMigratorTest {
 
             var fetchSquadTestStepResponseMock = new FetchSquadTestStepResponse(stepBeanCollectionMock);
 
-            when(squadApiMock.fetchLatestTestStepByTestCaseId(any())).thenReturn(fetchSquadTestStepResponseMock);
+            when(squadApiMock.fetchLatestTestStepByTestCaseIdAsync(any()))
+                    .thenReturn(CompletableFuture.completedFuture(fetchSquadTestStepResponseMock));
 
             when(squadApiMock.fetchLatestExecutionByIssueId(any())).thenReturn(emptyExecutionsMock);
 
             migratorSpy.runMigration("PROJECT");
 
-            verify(scaleApiMock, times(issuesMock.size())).updateTestStep(any(), any());
+            verify(scaleApiMock, times(issuesMock.size())).updateTestStepAsync(any(), any());
 
         }
 
         @Test
         void shouldCallCreateTestResultsOncePerExecution() throws IOException, ExecutionException, InterruptedException {
 
-            when(squadApiMock.fetchLatestTestStepByTestCaseId(any())).thenReturn(new FetchSquadTestStepResponse(Collections.emptyList()));
+            when(squadApiMock.fetchLatestTestStepByTestCaseIdAsync(any()))
+                    .thenReturn(CompletableFuture.completedFuture(new FetchSquadTestStepResponse(Collections.emptyList())));
 
             var statusMock = new SquadExecutionTypeResponse(1, "wip");
 
@@ -228,15 +426,83 @@ class SquadToScaleMigratorTest {
                     executionsMock);
 
             when(squadApiMock.fetchLatestExecutionByIssueId(any())).thenReturn(fetchSquadExecutionParsedResponseMock);
-            when(scaleApiMock.createTestExecution(any(), any())).thenReturn(new ScaleTestResultCreatedPayload("1"));
+            when(scaleApiMock.createMigrationTestCycle(any(), any(), any())).thenReturn("CYCLE-KEY");
+            when(scaleApiMock.createTestResults(any(), any())).thenAnswer(invocation -> createdResultsFor(invocation.getArgument(1)));
+
+            ArgumentCaptor<List<ScaleExecutionCreationPayload>> payloadsCaptor = ArgumentCaptor.forClass(List.class);
 
             migratorSpy.runMigration("PROJECT");
 
-            //each time a TestCase is processed, the executionsMock is returned, so we process executionsMock times the number of Test Cases
-            verify(scaleApiMock, times(issuesMock.size() * executionsMock.size())).createTestExecution(any(), any());
+            //all executions of a TestCase target the same cycle, so they are posted together once per TestCase
+            verify(scaleApiMock, times(issuesMock.size())).createTestResults(eq("CYCLE-KEY"), payloadsCaptor.capture());
+            verify(scaleApiMock, never()).createTestExecution(any(), any());
 
+            var totalPayloads = payloadsCaptor.getAllValues().stream().mapToInt(List::size).sum();
+            assertEquals(issuesMock.size() * executionsMock.size(), totalPayloads);
+        }
+
+        @Test
+        void shouldSplitTestResultsOfTheSameCycleInBatches() throws IOException, ExecutionException, InterruptedException {
+
+            var batchedMigConfig = MigrationConfiguration.builder(apiConfigurationMock, 5, "CYCLE",
+                    "attachments_mapped.csv", "postgres", "/home/ubuntu")
+                    .maxInFlightTasks(4)
+                    .testResultsBatchSize(2)
+                    .build();
+
+            var batchedMigrator = new SquadToScaleMigrator(jiraApiMock, squadApiMock, scaleApiMock,
+                    attachmentsMigratorMock, batchedMigConfig);
+
+            when(squadApiMock.fetchLatestTestStepByTestCaseIdAsync(any()))
+                    .thenReturn(CompletableFuture.completedFuture(new FetchSquadTestStepResponse(Collections.emptyList())));
+
+            var statusMock = new SquadExecutionTypeResponse(1, "wip");
+
+            var executionsMock = List.of(
+                    new SquadExecutionItemParsedResponse("1",
+                            statusMock, null, null,
+                            "versionName", "comment", "executedOn",
+                            "assignedTo", "assignedTo", "assigneeTo", "CYCLE-1", "folder"),
+                    new SquadExecutionItemParsedResponse("2",
+                            statusMock, null, null,
+                            "versionName", "comment", "executedOn",
+                            "assignedTo", "assignedTo", "assigneeTo", "CYCLE-1", "folder"),
+                    new SquadExecutionItemParsedResponse("3",
+                            statusMock, null, null,
+                            "versionName", "comment", "executedOn",
+                            "assignedTo", "assignedTo", "assigneeTo", "CYCLE-1", "folder")
+            );
+
+            var fetchSquadExecutionParsedResponseMock = new FetchSquadExecutionParsedResponse(Collections.emptyMap(),
+                    "10100",
+                    0,
+                    0,
+                    false,
+                    false,
+                    executionsMock);
+
+            when(squadApiMock.fetchLatestExecutionByIssueId(any())).thenReturn(fetchSquadExecutionParsedResponseMock);
+            when(scaleApiMock.createMigrationTestCycle(any(), any(), any())).thenReturn("CYCLE-KEY");
+            when(scaleApiMock.createTestResults(any(), any())).thenAnswer(invocation -> createdResultsFor(invocation.getArgument(1)));
+
+            ArgumentCaptor<SquadToScaleEntitiesMap> entitiesCaptor = ArgumentCaptor.forClass(SquadToScaleEntitiesMap.class);
+
+            batchedMigrator.runMigration("PROJECT");
+
+            //3 executions with a batch size of 2 end up in 2 requests per TestCase
+            verify(scaleApiMock, times(issuesMock.size() * 2)).createTestResults(eq("CYCLE-KEY"), any());
+
+            verify(attachmentsMigratorMock).export(entitiesCaptor.capture(), any());
+            assertEquals(executionsMock.size(), entitiesCaptor.getValue().testExecutionMap().size());
         }
 
     }
 
-}
\ No newline at end of file
+    private static ScalePOSTTestResultPayload createdResultsFor(List<ScaleExecutionCreationPayload> payloads) {
+        var createdResults = new ArrayList<ScaleTestResultCreatedPayload>();
+        for (int i = 0; i < payloads.size(); i++) {
+            createdResults.add(new ScaleTestResultCreatedPayload(String.valueOf(i)));
+        }
+        return new ScalePOSTTestResultPayload(createdResults);
+    }
+}
@@ -1,6 +1,7 @@
 package com.atlassian.migration.app.zephyr.migration.service;
 
 
+import com.atlassian.migration.app.zephyr.common.ApiException;
 import com.atlassian.migration.app.zephyr.common.ZephyrApiException;
 import com.atlassian.migration.app.zephyr.scale.api.ScaleApi;
 import org.junit.jupiter.api.BeforeEach;
@@ -10,6 +11,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -66,4 +68,26 @@ public class ScaleCycleServiceTest {
 
 
     }
+
+    @Test
+    void shouldTryToCreateCycleAgainWhenPreviousAttemptFailed() throws ZephyrApiException {
+
+        var squadCycleNameMock = "SQUAD_CYCLE";
+        var versionMock = "VERSION";
+        var scaleCycleKeyMock = "CYCLE-1";
+
+        when(scaleApi.createMigrationTestCycle(testCaseKeyMock, squadCycleNameMock, versionMock))
+                .thenThrow(new ZephyrApiException(new ApiException(500, "Internal Server Error")))
+                .thenReturn(scaleCycleKeyMock);
+
+        assertThrows(RuntimeException.class, () -> sutScaleCycleService
+                .getCycleKeyBySquadCycleName(squadCycleNameMock, testCaseKeyMock, versionMock));
+
+        var receivedScaleCycleKey = sutScaleCycleService
+                .getCycleKeyBySquadCycleName(squadCycleNameMock, testCaseKeyMock, versionMock);
+
+        assertEquals(scaleCycleKeyMock, receivedScaleCycleKey);
+        verify(scaleApi, times(2))
+                .createMigrationTestCycle(testCaseKeyMock, squadCycleNameMock, versionMock);
+    }
 }
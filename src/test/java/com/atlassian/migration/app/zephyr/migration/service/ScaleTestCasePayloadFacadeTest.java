@@ -183,4 +183,29 @@ public class ScaleTestCasePayloadFacadeTest {
         verify(jiraApiMock, never()).convertJiraTextFormattingToHtml(any());
         assertEquals(expectedPayload, receivedPayload);
     }
+
+    @Test
+    void shouldRenderDescriptionLocallyWithoutCallingJira() throws IOException {
+
+        var localRendererFacade = new ScaleTestCasePayloadFacade(jiraApiMock, WikiMarkupRenderer.RendererMode.LOCAL);
+        jiraIssueFieldResponseMock.description = "*bold* description";
+
+        var receivedPayload = localRendererFacade.createTestCasePayload(jiraIssuesResponseCompleteMock, projectKeyMock);
+
+        verify(jiraApiMock, never()).convertJiraTextFormattingToHtml(any());
+        assertEquals("<p><b>bold</b> description</p>", receivedPayload.objective());
+    }
+
+    @Test
+    void shouldRenderDescriptionThroughJiraWhenLocalRendererCannotHandleIt() throws IOException {
+
+        var localRendererFacade = new ScaleTestCasePayloadFacade(jiraApiMock, WikiMarkupRenderer.RendererMode.LOCAL);
+        jiraIssueFieldResponseMock.description = "{panel}description{panel}";
+        when(jiraApiMock.convertJiraTextFormattingToHtml(any())).thenReturn("<div>description</div>");
+
+        var receivedPayload = localRendererFacade.createTestCasePayload(jiraIssuesResponseCompleteMock, projectKeyMock);
+
+        verify(jiraApiMock, times(1)).convertJiraTextFormattingToHtml("{panel}description{panel}");
+        assertEquals("<div>description</div>", receivedPayload.objective());
+    }
 }
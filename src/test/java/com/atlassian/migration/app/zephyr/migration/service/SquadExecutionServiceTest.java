@@ -0,0 +1,92 @@
+package com.atlassian.migration.app.zephyr.migration.service;
+
+import com.atlassian.migration.app.zephyr.squad.api.SquadApi;
+import com.atlassian.migration.app.zephyr.squad.model.FetchSquadExecutionParsedResponse;
+import com.atlassian.migration.app.zephyr.squad.model.SquadExecutionItemParsedResponse;
+import com.atlassian.migration.app.zephyr.squad.model.SquadExecutionSearchItemResponse;
+import com.atlassian.migration.app.zephyr.squad.model.SquadExecutionSearchResponse;
+import com.atlassian.migration.app.zephyr.squad.model.SquadExecutionStatusResponse;
+import com.atlassian.migration.app.zephyr.squad.model.SquadExecutionTypeResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class SquadExecutionServiceTest {
+
+    private static final String PROJECT_KEY = "PROJECT";
+
+    @Mock
+    private SquadApi squadApi;
+
+    @Test
+    void shouldSearchProjectExecutionsOnceAndHandThemOutByIssue() throws IOException {
+
+        var sutExecutionService = new SquadExecutionService(squadApi, PROJECT_KEY,
+                SquadExecutionService.ExtractionMode.BULK);
+
+        //the host caps the first page below the size asked for
+        when(squadApi.searchExecutionsByProject(PROJECT_KEY, 0, SquadExecutionService.SEARCH_PAGE_SIZE))
+                .thenReturn(new SquadExecutionSearchResponse(
+                        List.of(execution("1", "10100"), execution("2", "10101")), 3, 0, 2));
+        when(squadApi.searchExecutionsByProject(PROJECT_KEY, 2, SquadExecutionService.SEARCH_PAGE_SIZE))
+                .thenReturn(new SquadExecutionSearchResponse(List.of(execution("3", "10100")), 3, 2, 2));
+
+        var firstIssueExecutions = sutExecutionService.getExecutionsByIssueId("10100");
+
+        assertEquals(List.of("1", "3"), firstIssueExecutions.stream().map(SquadExecutionItemParsedResponse::id).toList());
+        assertEquals(new SquadExecutionTypeResponse(1, "Pass"), firstIssueExecutions.get(0).status());
+        assertEquals("creator", firstIssueExecutions.get(0).createdByUserName());
+        assertEquals(1, sutExecutionService.getExecutionsByIssueId("10101").size());
+        assertTrue(sutExecutionService.getExecutionsByIssueId("10199").isEmpty());
+
+        verify(squadApi, times(2)).searchExecutionsByProject(anyString(), anyInt(), anyInt());
+        verify(squadApi, never()).fetchLatestExecutionByIssueId(anyString());
+    }
+
+    @Test
+    void shouldDropExecutionsNotHandedOutOnceReleased() throws IOException {
+
+        var sutExecutionService = new SquadExecutionService(squadApi, PROJECT_KEY,
+                SquadExecutionService.ExtractionMode.BULK);
+
+        when(squadApi.searchExecutionsByProject(PROJECT_KEY, 0, SquadExecutionService.SEARCH_PAGE_SIZE))
+                .thenReturn(new SquadExecutionSearchResponse(List.of(execution("1", "10100")), 1, 0, 1));
+
+        sutExecutionService.getExecutionsByIssueId("10101");
+        sutExecutionService.release();
+
+        assertTrue(sutExecutionService.getExecutionsByIssueId("10100").isEmpty());
+        verify(squadApi, times(1)).searchExecutionsByProject(anyString(), anyInt(), anyInt());
+    }
+
+    @Test
+    void shouldNotSearchProjectExecutionsPerIssue() throws IOException {
+
+        var sutExecutionService = new SquadExecutionService(squadApi, PROJECT_KEY,
+                SquadExecutionService.ExtractionMode.PER_ISSUE);
+
+        when(squadApi.fetchLatestExecutionByIssueId("10100")).thenReturn(
+                new FetchSquadExecutionParsedResponse(
+                        null, "10100", 0, 0, false, false, List.of()));
+
+        assertTrue(sutExecutionService.getExecutionsByIssueId("10100").isEmpty());
+
+        verify(squadApi, never()).searchExecutionsByProject(anyString(), anyInt(), anyInt());
+    }
+
+    private static SquadExecutionSearchItemResponse execution(String id, String issueId) {
+        return new SquadExecutionSearchItemResponse(id, issueId, new SquadExecutionStatusResponse("1", "PASS", null),
+                "creator", "creator", "Unscheduled", "comment", "cycle", null, null, null, null, null);
+    }
+}
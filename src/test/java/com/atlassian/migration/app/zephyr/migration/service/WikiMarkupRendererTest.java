@@ -0,0 +1,78 @@
+package com.atlassian.migration.app.zephyr.migration.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WikiMarkupRendererTest {
+
+    private final WikiMarkupRenderer renderer = new WikiMarkupRenderer();
+
+    @Test
+    void shouldRenderParagraphsWithInlineFormatting() {
+        var rendered = renderer.render("Some *bold*, _italic_, -deleted-, +inserted+ and {{mono_text}}\nnext line\n\nnew <paragraph>");
+
+        assertEquals(Optional.of("<p>Some <b>bold</b>, <em>italic</em>, <del>deleted</del>, <ins>inserted</ins> and "
+                + "<tt>mono_text</tt><br/>\nnext line</p><p>new &lt;paragraph&gt;</p>"), rendered);
+    }
+
+    @Test
+    void shouldRenderSuperscriptSubscriptAndCitations() {
+        var rendered = renderer.render("E = mc ^2^, x ~i~ as ??Einstein?? wrote");
+
+        assertEquals(Optional.of("<p>E = mc <sup>2</sup>, x <sub>i</sub> as <cite>Einstein</cite> wrote</p>"),
+                rendered);
+    }
+
+    @Test
+    void shouldNotFormatMarkersInsideWords() {
+        var rendered = renderer.render("snake_case_name and well-known-thing 2*3*4");
+
+        assertEquals(Optional.of("<p>snake_case_name and well-known-thing 2*3*4</p>"), rendered);
+    }
+
+    @Test
+    void shouldRenderHeadingsAndNestedLists() {
+        var rendered = renderer.render("h2. Steps\n* first\n** nested\n* second\n# one\n# two");
+
+        assertEquals(Optional.of("<h2>Steps</h2><ul><li>first<ul><li>nested</li></ul></li><li>second</li></ul>"
+                + "<ol><li>one</li><li>two</li></ol>"), rendered);
+    }
+
+    @Test
+    void shouldNestListsSkippingADepthInsideAnItem() {
+        var rendered = renderer.render("* first\n*** deep\n# other");
+
+        assertEquals(Optional.of("<ul><li>first<ul><li><ul><li>deep</li></ul></li></ul></li></ul>"
+                + "<ol><li>other</li></ol>"), rendered);
+    }
+
+    @Test
+    void shouldRenderTablesWithLinksInCells() {
+        var rendered = renderer.render("||Name||Link||\n|row|[site|https://example.com?a=1&b=2]|");
+
+        assertEquals(Optional.of("<table><tbody><tr><th>Name</th><th>Link</th></tr><tr><td>row</td>"
+                + "<td><a href=\"https://example.com?a=1&amp;b=2\">site</a></td></tr></tbody></table>"), rendered);
+    }
+
+    @Test
+    void shouldRenderCodeBlocksWithoutFormattingTheirContent() {
+        var rendered = renderer.render("{code:java}\nint a = *b* < c;\n{code}\nafter https://example.com");
+
+        assertEquals(Optional.of("<pre>int a = *b* &lt; c;</pre>"
+                + "<p>after <a href=\"https://example.com\">https://example.com</a></p>"), rendered);
+    }
+
+    @Test
+    void shouldLeaveUnsupportedMarkupToJira() {
+        assertTrue(renderer.render("{panel:title=Note}text{panel}").isEmpty());
+        assertTrue(renderer.render("see !screenshot.png!").isEmpty());
+        assertTrue(renderer.render("ping [~admin]").isEmpty());
+        assertTrue(renderer.render("done (/)").isEmpty());
+        assertTrue(renderer.render("link to [Some Page]").isEmpty());
+        assertTrue(renderer.render("{code}never closed").isEmpty());
+    }
+}
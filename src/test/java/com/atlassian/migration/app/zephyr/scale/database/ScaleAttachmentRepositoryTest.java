@@ -0,0 +1,158 @@
+package com.atlassian.migration.app.zephyr.scale.database;
+
+import com.atlassian.migration.app.zephyr.migration.model.AttachmentAssociationData;
+import com.atlassian.migration.app.zephyr.migration.model.SquadOriginEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ScaleAttachmentRepositoryTest {
+
+    @Mock
+    private DriverManagerDataSource dataSourceMock;
+
+    @Mock
+    private Connection connectionMock;
+
+    @Mock
+    private DatabaseMetaData metaDataMock;
+
+    @Mock
+    private PreparedStatement preparedStatementMock;
+
+    @Mock
+    private ResultSet resultSetMock;
+
+    @BeforeEach
+    void setup() throws SQLException {
+        when(dataSourceMock.getConnection()).thenReturn(connectionMock);
+        when(connectionMock.getMetaData()).thenReturn(metaDataMock);
+        when(metaDataMock.supportsBatchUpdates()).thenReturn(true);
+        when(connectionMock.prepareStatement(anyString())).thenReturn(preparedStatementMock);
+        when(preparedStatementMock.getConnection()).thenReturn(connectionMock);
+        when(preparedStatementMock.executeBatch()).thenAnswer(invocation -> new int[0]);
+        when(preparedStatementMock.executeQuery()).thenReturn(resultSetMock);
+    }
+
+    @Test
+    void shouldInsertTypedRowsInBatchesOfOneTransaction() throws SQLException {
+        when(dataSourceMock.getUrl()).thenReturn("jdbc:postgresql://localhost:5432/jira");
+        when(connectionMock.getAutoCommit()).thenReturn(true);
+
+        var attachments = IntStream.rangeClosed(1, ScaleAttachmentRepository.INSERT_BATCH_SIZE + 1)
+                .mapToObj(index -> attachment(String.valueOf(index)))
+                .toList();
+
+        new ScaleAttachmentRepository(dataSourceMock).insertAll(attachments);
+
+        ArgumentCaptor<String> sqlCaptor = ArgumentCaptor.forClass(String.class);
+        verify(connectionMock, times(4)).prepareStatement(sqlCaptor.capture());
+
+        assertTrue(sqlCaptor.getAllValues().get(0).startsWith("SELECT \"FILE_NAME\", \"TEST_CASE_ID\", \"STEP_ID\", "
+                + "\"TEST_RESULT_ID\" FROM \"AO_4D28DD_ATTACHMENT\" WHERE \"FILE_NAME\" IN (?, ?"));
+        assertEquals("INSERT INTO \"AO_4D28DD_ATTACHMENT\" (\"FILE_NAME\", \"FILE_SIZE\", \"NAME\", \"PROJECT_ID\", "
+                + "\"USER_KEY\", \"TEMPORARY\", \"CREATED_ON\", \"MIME_TYPE\", \"TEST_CASE_ID\", \"STEP_ID\", "
+                + "\"TEST_RESULT_ID\") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", sqlCaptor.getValue());
+
+        verify(preparedStatementMock, times(ScaleAttachmentRepository.INSERT_BATCH_SIZE + 1)).addBatch();
+        verify(preparedStatementMock, times(2)).executeBatch();
+        verify(preparedStatementMock, atLeastOnce()).setObject(2, 10L, Types.BIGINT);
+        verify(preparedStatementMock, atLeastOnce()).setNull(10, Types.BIGINT);
+        verify(connectionMock, times(1)).commit();
+    }
+
+    @Test
+    void shouldRollBackEveryBatchOfAPageWhenOneFails() throws SQLException {
+        when(dataSourceMock.getUrl()).thenReturn("jdbc:postgresql://localhost:5432/jira");
+        when(connectionMock.getAutoCommit()).thenReturn(true);
+        when(preparedStatementMock.executeBatch())
+                .thenAnswer(invocation -> new int[0])
+                .thenThrow(new SQLException("connection reset"));
+
+        var attachments = IntStream.rangeClosed(1, ScaleAttachmentRepository.INSERT_BATCH_SIZE + 1)
+                .mapToObj(index -> attachment(String.valueOf(index)))
+                .toList();
+
+        var repository = new ScaleAttachmentRepository(dataSourceMock);
+
+        assertThrows(DataAccessException.class, () -> repository.insertAll(attachments));
+
+        //the first batch is not left behind, so migrating the page again doesn't insert its rows twice
+        verify(connectionMock, never()).commit();
+        verify(connectionMock).rollback();
+    }
+
+    @Test
+    void shouldQuoteColumnsWithBackticksOnMysql() throws SQLException {
+        when(dataSourceMock.getUrl()).thenReturn("jdbc:mysql://localhost:3306/jira");
+
+        new ScaleAttachmentRepository(dataSourceMock).insertAll(List.of(attachment("1")));
+
+        ArgumentCaptor<String> sqlCaptor = ArgumentCaptor.forClass(String.class);
+        verify(connectionMock, times(2)).prepareStatement(sqlCaptor.capture());
+
+        assertTrue(sqlCaptor.getValue().startsWith("INSERT INTO `AO_4D28DD_ATTACHMENT` (`FILE_NAME`, `FILE_SIZE`"));
+    }
+
+    @Test
+    void shouldSkipAttachmentsAlreadyInsertedForTheSameEntity() throws SQLException {
+        when(dataSourceMock.getUrl()).thenReturn("jdbc:postgresql://localhost:5432/jira");
+        when(resultSetMock.next()).thenReturn(true, false);
+        when(resultSetMock.getString(1)).thenReturn("1");
+        when(resultSetMock.getLong(anyInt())).thenReturn(42L, 0L, 0L);
+        when(resultSetMock.wasNull()).thenReturn(false, true, true);
+
+        new ScaleAttachmentRepository(dataSourceMock).insertAll(List.of(attachment("1"), attachment("2")));
+
+        //the page was committed before the journal recorded it, only the row that is missing is inserted again
+        verify(preparedStatementMock, times(1)).addBatch();
+        //"1" is only bound once, by the lookup of the existing rows
+        verify(preparedStatementMock, times(1)).setString(1, "1");
+        verify(preparedStatementMock, times(1)).setString(1, "2");
+    }
+
+    @Test
+    void shouldBindTemporaryAsANumberOnOracle() throws SQLException {
+        when(dataSourceMock.getUrl()).thenReturn("jdbc:oracle:thin:@localhost:1521:jira");
+
+        new ScaleAttachmentRepository(dataSourceMock).insertAll(List.of(attachment("1")));
+
+        verify(preparedStatementMock).setObject(6, 0, Types.INTEGER);
+    }
+
+    @Test
+    void shouldBindTemporaryAsABitOnSqlServer() throws SQLException {
+        when(dataSourceMock.getUrl()).thenReturn("jdbc:sqlserver://localhost:1433;databaseName=jira");
+
+        new ScaleAttachmentRepository(dataSourceMock).insertAll(List.of(attachment("1")));
+
+        verify(preparedStatementMock).setObject(6, false, Types.BIT);
+    }
+
+    private static AttachmentAssociationData attachment(String fileName) {
+        return AttachmentAssociationData.createAttachmentAssociationDataFromTestCase(
+                "file.txt", fileName, "text/plain", "10", "admin", "10000", "42", new SquadOriginEntity("1", "PROJ-1"));
+    }
+}
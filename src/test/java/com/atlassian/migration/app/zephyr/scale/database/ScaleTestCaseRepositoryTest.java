@@ -0,0 +1,115 @@
+package com.atlassian.migration.app.zephyr.scale.database;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ScaleTestCaseRepositoryTest {
+
+    @Mock
+    private DriverManagerDataSource dataSourceMock;
+
+    @Mock
+    private Connection connectionMock;
+
+    @Mock
+    private PreparedStatement preparedStatementMock;
+
+    @Mock
+    private ResultSet resultSetMock;
+
+    @BeforeEach
+    void setup() throws SQLException {
+        when(dataSourceMock.getConnection()).thenReturn(connectionMock);
+        when(connectionMock.prepareStatement(anyString())).thenReturn(preparedStatementMock);
+        when(preparedStatementMock.executeQuery()).thenReturn(resultSetMock);
+    }
+
+    @Test
+    void shouldResolveKeysWithBindParametersInOneQuery() throws SQLException {
+        when(dataSourceMock.getUrl()).thenReturn("jdbc:postgresql://localhost:5432/jira");
+        when(resultSetMock.next()).thenReturn(true, true, false);
+        when(resultSetMock.getLong("ID")).thenReturn(10L, 20L);
+        when(resultSetMock.getString("KEY")).thenReturn("PROJ-T1", "PROJ-T2");
+
+        var repository = new ScaleTestCaseRepository(dataSourceMock);
+
+        var idsByKey = repository.getByKeys(List.of("PROJ-T1", "PROJ-T2", "PROJ-T1"));
+
+        ArgumentCaptor<String> sqlCaptor = ArgumentCaptor.forClass(String.class);
+        verify(connectionMock, times(1)).prepareStatement(sqlCaptor.capture());
+
+        assertEquals("SELECT \"ID\", \"KEY\" FROM \"AO_4D28DD_TEST_CASE\" WHERE \"KEY\" IN (?, ?)", sqlCaptor.getValue());
+        assertEquals(Map.of("PROJ-T1", 10L, "PROJ-T2", 20L), idsByKey);
+    }
+
+    @Test
+    void shouldSplitKeysInChunksRespectingTheInListLimit() throws SQLException {
+        when(dataSourceMock.getUrl()).thenReturn("jdbc:oracle:thin:@localhost:1521:jira");
+        when(resultSetMock.next()).thenReturn(false);
+
+        var keys = IntStream.rangeClosed(1, ScaleTestCaseRepository.MAX_KEYS_PER_QUERY + 1)
+                .mapToObj(index -> "PROJ-T" + index)
+                .toList();
+
+        new ScaleTestCaseRepository(dataSourceMock).getByKeys(keys);
+
+        ArgumentCaptor<String> sqlCaptor = ArgumentCaptor.forClass(String.class);
+        verify(connectionMock, times(2)).prepareStatement(sqlCaptor.capture());
+
+        assertTrue(sqlCaptor.getAllValues().get(1).endsWith("IN (?)"));
+    }
+
+    @Test
+    void shouldPadKeysToTheNextPowerOfTwoToReuseStatements() throws SQLException {
+        when(dataSourceMock.getUrl()).thenReturn("jdbc:postgresql://localhost:5432/jira");
+        when(resultSetMock.next()).thenReturn(false);
+
+        new ScaleTestCaseRepository(dataSourceMock).getByKeys(List.of("PROJ-T1", "PROJ-T2", "PROJ-T3"));
+
+        ArgumentCaptor<String> sqlCaptor = ArgumentCaptor.forClass(String.class);
+        verify(connectionMock).prepareStatement(sqlCaptor.capture());
+
+        assertTrue(sqlCaptor.getValue().endsWith("IN (?, ?, ?, ?)"));
+        verify(preparedStatementMock).setString(3, "PROJ-T3");
+        verify(preparedStatementMock).setString(4, "PROJ-T3");
+        assertEquals(ScaleTestCaseRepository.MAX_KEYS_PER_QUERY, ScaleTestCaseRepository.bindCount(600));
+    }
+
+    @Test
+    void shouldBindKeyAndResolveSchemaOnceWhenFetchingByKey() throws SQLException {
+        when(dataSourceMock.getUrl()).thenReturn("jdbc:sqlserver://localhost:1433;databaseName=jira");
+        when(dataSourceMock.getSchema()).thenReturn("jiraschema");
+        when(resultSetMock.next()).thenReturn(true, false, false);
+        when(resultSetMock.getLong("ID")).thenReturn(10L);
+        when(resultSetMock.getString("KEY")).thenReturn("PROJ-T1");
+
+        var repository = new ScaleTestCaseRepository(dataSourceMock);
+
+        assertEquals(10L, repository.getByKey("PROJ-T1").orElseThrow().id());
+        assertTrue(repository.getByKey("PROJ-T2").isEmpty());
+
+        verify(connectionMock, times(2)).prepareStatement(
+                "SELECT \"ID\", \"KEY\" FROM jiraschema.AO_4D28DD_TEST_CASE WHERE \"KEY\" = ?");
+        verify(preparedStatementMock).setString(1, "PROJ-T2");
+        verify(dataSourceMock, times(1)).getUrl();
+    }
+}